@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import jbyoshi.robotgame.graphics.FrameRecorder;
+import jbyoshi.robotgame.gui.ScriptStorage;
+import jbyoshi.robotgame.impl.PlayerImpl;
+import jbyoshi.robotgame.model.GameModel;
+import jbyoshi.robotgame.script.*;
+import jbyoshi.robotgame.server.PlayerConnection;
+import jbyoshi.robotgame.server.ServerThread;
+
+/**
+ * Runs a single game without a window, as fast as the scripts allow.
+ */
+public final class HeadlessGame {
+	/**
+	 * Where to save pictures of each game, or null to not save any. It is set
+	 * with the {@code record.dir} system property. {@code record.zoom} sets the
+	 * size of each grid spot in pixels, and {@code record.subFrames} sets how
+	 * many pictures are saved for each tick.
+	 */
+	static final String RECORD_DIR = System.getProperty("record.dir");
+
+	private HeadlessGame() {
+	}
+
+	public static void main(String[] args) {
+		if (args.length != 2 && args.length != 3) {
+			System.err.println("Usage: --headless <script directory> <main class> [seed]");
+			System.exit(1);
+		}
+		System.setProperty("java.awt.headless", "true");
+
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : new Random().nextLong();
+		Script script = loadScript(args[0], args[1]);
+		System.out.println("Seed: " + seed);
+		Path recordDir = RECORD_DIR == null ? null : Paths.get(RECORD_DIR);
+		FrameRecorder recorder = recordDir == null ? null : createRecorder(recordDir);
+		ServerThread server = createServer(script, seed, recorder);
+		long start = System.nanoTime();
+		server.run();
+		long time = System.nanoTime() - start;
+
+		GameModel game = server.getGame();
+		printResult(game);
+		double seconds = time / (double) TimeUnit.SECONDS.toNanos(1);
+		System.out.printf("%d ticks in %.3f seconds (%.1f ticks/second)%n", game.ticks, seconds, game.ticks / seconds);
+		printStats(server.getPlayers());
+		if (recorder != null) {
+			finishRecording(recorder, recordDir);
+		}
+	}
+
+	static void printStats(Collection<PlayerImpl> players) {
+		System.out.println("Script CPU time:");
+		for (PlayerImpl player : players) {
+			System.out.printf("  %-12s %s%n", player.getName(), player.getStats());
+		}
+	}
+
+	static void printResult(GameModel game) {
+		if (game.getWinner() == null) {
+			System.out.println(game.ticks == GameModel.MAX_TICKS ? "Time's up!" : "It's a tie!");
+		} else {
+			System.out.println(game.getWinner().getName() + " wins!");
+		}
+	}
+
+	static Script loadScript(String dir, String mainClass) {
+		try {
+			return ScriptLoader.loadScript(new ScriptStorage(Paths.get(dir), mainClass));
+		} catch (CompilationException e) {
+			System.err.println(e.getMessage());
+		} catch (InvocationTargetException e) {
+			e.getTargetException().printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		System.exit(1);
+		throw new AssertionError();
+	}
+
+	static FrameRecorder createRecorder(Path dir) {
+		try {
+			return new FrameRecorder(dir, Double.parseDouble(System.getProperty("record.zoom", "8")),
+					Integer.getInteger("record.subFrames", 1));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		System.exit(1);
+		throw new AssertionError();
+	}
+
+	static void finishRecording(FrameRecorder recorder, Path dir) {
+		try {
+			recorder.close();
+			System.out.println("Saved " + recorder.getFrameCount() + " pictures to " + dir);
+		} catch (IOException e) {
+			System.err.println("Could not save the pictures to " + dir + ": " + e);
+		}
+	}
+
+	/**
+	 * Creates the server for a game.
+	 *
+	 * @param recorder Records the game, or null to not record it
+	 */
+	static ServerThread createServer(Script script, long seed, FrameRecorder recorder) {
+		List<PlayerConnection> players = RobotGame.choosePlayers(GameModel.DEFAULT_PLAYERS, new Random(seed)).stream()
+				.map(player -> new PooledScriptPlayer(player, script)).collect(Collectors.toCollection(ArrayList::new));
+		if (recorder != null) {
+			players.set(0, recorder.watch(players.get(0)));
+		}
+		return new ServerThread(players, 0, seed);
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame;
+
+import java.io.IOException;
+import java.util.Random;
+
+import jbyoshi.robotgame.model.GameModel;
+import jbyoshi.robotgame.script.Script;
+import jbyoshi.robotgame.server.SocketClient;
+import jbyoshi.robotgame.server.SocketServer;
+
+/**
+ * Runs one side of a game played over the network, without a window.
+ */
+public final class NetworkGame {
+	private NetworkGame() {
+	}
+
+	public static void server(String[] args) {
+		if (args.length < 1 || args.length > 3) {
+			System.err.println("Usage: --server <port> [tick length in milliseconds] [seed]");
+			System.exit(1);
+		}
+		System.setProperty("java.awt.headless", "true");
+
+		int port = Integer.parseInt(args[0]);
+		long tickLength = args.length > 1 ? Long.parseLong(args[1]) : 0;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : new Random().nextLong();
+		SocketServer server;
+		try {
+			server = new SocketServer(port, RobotGame.choosePlayers(GameModel.DEFAULT_PLAYERS, new Random(seed)), tickLength, seed);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+			return;
+		}
+		System.out.println("Seed: " + seed);
+		System.out.println("Waiting for players on port " + server.getPort());
+		server.run();
+		GameModel game = server.getGame();
+		if (game != null) {
+			HeadlessGame.printResult(game);
+		}
+	}
+
+	public static void client(String[] args) {
+		if (args.length != 4) {
+			System.err.println("Usage: --client <host> <port> <script directory> <main class>");
+			System.exit(1);
+		}
+		System.setProperty("java.awt.headless", "true");
+
+		Script script = HeadlessGame.loadScript(args[2], args[3]);
+		SocketClient client;
+		try {
+			client = new SocketClient(args[0], Integer.parseInt(args[1]), script);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+			return;
+		}
+		client.run();
+		GameModel game = client.getGame();
+		if (game != null) {
+			System.out.println("Played as " + client.getPlayer().getName());
+			HeadlessGame.printResult(game);
+		}
+	}
+}
@@ -31,20 +31,35 @@ import javax.swing.plaf.FontUIResource;
 import javax.swing.plaf.metal.DefaultMetalTheme;
 import javax.swing.plaf.metal.MetalLookAndFeel;
 
-import jbyoshi.robotgame.api.Game;
-import jbyoshi.robotgame.api.Point;
 import jbyoshi.robotgame.graphics.*;
 import jbyoshi.robotgame.gui.ScriptSelectionComponent;
 import jbyoshi.robotgame.gui.ScriptStorage;
 import jbyoshi.robotgame.impl.PlayerImpl;
 import jbyoshi.robotgame.model.*;
 import jbyoshi.robotgame.script.*;
+import jbyoshi.robotgame.server.PlayerConnection;
 import jbyoshi.robotgame.server.ServerThread;
 import jbyoshi.robotgame.util.updater.Update;
 import jbyoshi.robotgame.util.updater.Updater;
 
 public final class RobotGame {
 	public static void main(String[] args) {
+		if (args.length > 0 && args[0].equals("--headless")) {
+			HeadlessGame.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equals("--tournament")) {
+			Tournament.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equals("--server")) {
+			NetworkGame.server(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equals("--client")) {
+			NetworkGame.client(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
 		relaunch(new JFrame());
 	}
 
@@ -153,35 +168,18 @@ public final class RobotGame {
             } catch (IOException e) {
                 e.printStackTrace();
             }
-            int numPlayersPerGame = 4;
-            List<PlayerImpl> currentPlayers = new ArrayList<>(numPlayersPerGame);
-            for (int playerNum = 0; playerNum < numPlayersPerGame; playerNum++) {
-                int random = (int) (Math.random() * (allPlayers.length - playerNum));
-                int i = -1;
-                do {
-					i++;
-                    while (currentPlayers.contains(allPlayers[i])) i++;
-                    random--;
-                } while (random >= 0);
-                currentPlayers.add(allPlayers[i]);
-            }
+            List<PlayerImpl> currentPlayers = choosePlayers(GameModel.DEFAULT_PLAYERS, new Random());
 
-            GameModel serverModel = new GameModel();
-            serverModel.add(new SpawnerModel(currentPlayers.get(0), new Point(Game.WORLD_SIZE / 4, Game.WORLD_SIZE / 4)));
-            serverModel.add(new SpawnerModel(currentPlayers.get(1), new Point(Game.WORLD_SIZE * 3 / 4, Game.WORLD_SIZE / 4)));
-            serverModel.add(new SpawnerModel(currentPlayers.get(2), new Point(Game.WORLD_SIZE / 4, Game.WORLD_SIZE * 3 / 4)));
-            serverModel.add(new SpawnerModel(currentPlayers.get(3), new Point(Game.WORLD_SIZE * 3 / 4, Game.WORLD_SIZE * 3 / 4)));
-
-            final List<ScriptThread> scriptThreads = currentPlayers.stream().map(new Function<PlayerImpl, ScriptThread>() {
+            final List<PlayerConnection> scriptThreads = currentPlayers.stream().map(new Function<PlayerImpl, PlayerConnection>() {
                 private boolean firstScript = true;
 
                 @Override
-                public ScriptThread apply(PlayerImpl player) {
+                public PlayerConnection apply(PlayerImpl player) {
                     if (firstScript) {
                         firstScript = false;
                         return new DrawScriptThread(player, script, draw -> setupGuiIngame(draw, frame));
                     }
-                    return new ScriptThread(player, script);
+                    return new PooledScriptPlayer(player, script);
                 }
             }).collect(Collectors.toList());
             new ServerThread(scriptThreads).run();
@@ -194,6 +192,27 @@ public final class RobotGame {
         }
 	}
 
+	static List<PlayerImpl> choosePlayers(int numPlayersPerGame, Random rand) {
+		List<PlayerImpl> currentPlayers = new ArrayList<>(numPlayersPerGame);
+		for (int playerNum = 0; playerNum < numPlayersPerGame; playerNum++) {
+			if (playerNum >= allPlayers.length) {
+				// Out of named colors; spread the rest around the color wheel.
+				float hue = (playerNum - allPlayers.length) * 0.618034f % 1;
+				currentPlayers.add(new PlayerImpl("Player " + (playerNum + 1), Color.getHSBColor(hue, 0.7f, 0.8f)));
+				continue;
+			}
+			int random = rand.nextInt(allPlayers.length - playerNum);
+			int i = -1;
+			do {
+				i++;
+				while (currentPlayers.contains(allPlayers[i])) i++;
+				random--;
+			} while (random >= 0);
+			currentPlayers.add(allPlayers[i]);
+		}
+		return currentPlayers;
+	}
+
 	private static void setupGuiIngame(JComponent draw, JFrame frame) {
 		frame.getContentPane().removeAll();
 		frame.getContentPane().add(draw);
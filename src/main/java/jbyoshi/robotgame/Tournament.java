@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jbyoshi.robotgame.graphics.FrameRecorder;
+import jbyoshi.robotgame.impl.PlayerImpl;
+import jbyoshi.robotgame.model.*;
+import jbyoshi.robotgame.script.Script;
+import jbyoshi.robotgame.server.ServerThread;
+
+/**
+ * Runs many headless games at once and prints a summary of the results.
+ * Every game has its own model and script threads; only the loaded script is
+ * shared, so scripts should not keep state in static fields.
+ */
+public final class Tournament {
+	private Tournament() {
+	}
+
+	public static void main(String[] args) {
+		if (args.length != 3 && args.length != 4) {
+			System.err.println("Usage: --tournament <number of games> <script directory> <main class> [seed]");
+			System.exit(1);
+		}
+		System.setProperty("java.awt.headless", "true");
+
+		int numGames = Integer.parseInt(args[0]);
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : new Random().nextLong();
+		Script script = HeadlessGame.loadScript(args[1], args[2]);
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads,
+				new ThreadFactoryBuilder().setNameFormat("Tournament Game %d").build());
+		long start = System.nanoTime();
+		List<Future<Result>> futures = new ArrayList<>(numGames);
+		for (int i = 0; i < numGames; i++) {
+			long gameSeed = seed + i;
+			futures.add(executor.submit(() -> runGame(script, gameSeed)));
+		}
+		executor.shutdown();
+
+		List<Result> results = new ArrayList<>(numGames);
+		for (Future<Result> future : futures) {
+			try {
+				results.add(future.get());
+			} catch (InterruptedException e) {
+				executor.shutdownNow();
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				e.getCause().printStackTrace();
+			}
+		}
+		long time = System.nanoTime() - start;
+
+		printResults(results);
+		double seconds = time / (double) TimeUnit.SECONDS.toNanos(1);
+		System.out.printf("%d games on %d threads in %.3f seconds%n", results.size(), numThreads, seconds);
+	}
+
+	private static Result runGame(Script script, long seed) {
+		// Each game is saved in its own directory, named after its seed.
+		Path recordDir = HeadlessGame.RECORD_DIR == null ? null
+				: Paths.get(HeadlessGame.RECORD_DIR, Long.toString(seed));
+		FrameRecorder recorder = recordDir == null ? null : HeadlessGame.createRecorder(recordDir);
+		ServerThread server = HeadlessGame.createServer(script, seed, recorder);
+		server.run();
+		if (recorder != null) {
+			HeadlessGame.finishRecording(recorder, recordDir);
+		}
+		GameModel game = server.getGame();
+		Map<PlayerImpl, Integer> survivors = new HashMap<>();
+		for (Model model : game.getAllModels()) {
+			if (model instanceof OwnedModel) {
+				survivors.merge(((OwnedModel) model).getPlayer(), 1, Integer::sum);
+			}
+		}
+		return new Result(seed, game.getWinner(), game.ticks, survivors, server.getPlayers());
+	}
+
+	private static void printResults(List<Result> results) {
+		System.out.printf("%-6s %-20s %-12s %6s %s%n", "Game", "Seed", "Winner", "Ticks", "Surviving units");
+		Map<String, Integer> wins = new TreeMap<>();
+		long totalTicks = 0;
+		for (int i = 0; i < results.size(); i++) {
+			Result result = results.get(i);
+			String winner = result.winner == null ? "(none)" : result.winner.getName();
+			wins.merge(winner, 1, Integer::sum);
+			totalTicks += result.ticks;
+			StringJoiner survivors = new StringJoiner(", ");
+			result.survivors.forEach((player, count) -> survivors.add(player.getName() + "=" + count));
+			System.out.printf("%-6d %-20d %-12s %6d %s%n", i + 1, result.seed, winner, result.ticks, survivors);
+		}
+		System.out.println();
+		System.out.printf("%-12s %6s%n", "Winner", "Games");
+		wins.forEach((winner, count) -> System.out.printf("%-12s %6d%n", winner, count));
+		if (!results.isEmpty()) {
+			System.out.printf("Average length: %.1f ticks%n", totalTicks / (double) results.size());
+		}
+		Set<PlayerImpl> players = new TreeSet<>(Comparator.comparing(PlayerImpl::getName));
+		results.forEach(result -> players.addAll(result.players));
+		HeadlessGame.printStats(players);
+	}
+
+	private static final class Result {
+		final long seed;
+		final PlayerImpl winner;
+		final int ticks;
+		final Map<PlayerImpl, Integer> survivors;
+		final List<PlayerImpl> players;
+
+		Result(long seed, PlayerImpl winner, int ticks, Map<PlayerImpl, Integer> survivors, List<PlayerImpl> players) {
+			this.seed = seed;
+			this.winner = winner;
+			this.ticks = ticks;
+			this.survivors = survivors;
+			this.players = players;
+		}
+	}
+}
@@ -16,25 +16,23 @@
  */
 package jbyoshi.robotgame.action;
 
-import java.util.*;
-
 public final class BoundAction {
 	public final Action<?> action;
-	public final UUID targetId;
+	public final int targetId;
 
-	public BoundAction(Action<?> action, UUID targetId) {
+	public BoundAction(Action<?> action, int targetId) {
 		this.action = action;
 		this.targetId = targetId;
 	}
 
 	@Override
 	public int hashCode() {
-		return this.targetId.hashCode() ^ action.getClass().hashCode();
+		return this.targetId ^ action.getClass().hashCode();
 	}
 
 	@Override
 	public boolean equals(Object other) {
-		return other instanceof BoundAction && ((BoundAction) other).targetId.equals(targetId)
+		return other instanceof BoundAction && ((BoundAction) other).targetId == targetId
 				&& ((BoundAction) other).action.getClass().equals(action.getClass());
 	}
 }
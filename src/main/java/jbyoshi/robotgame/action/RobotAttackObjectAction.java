@@ -20,13 +20,19 @@ import jbyoshi.robotgame.model.AttackableModel;
 import jbyoshi.robotgame.model.RobotModel;
 import jbyoshi.robotgame.api.Direction;
 
-import java.util.UUID;
-
 public final class RobotAttackObjectAction implements Action<RobotModel> {
-	private final UUID target;
+	private final int target;
 
 	public RobotAttackObjectAction(AttackableModel target) {
-		this.target = target.getId();
+		this(target.getId());
+	}
+
+	public RobotAttackObjectAction(int target) {
+		this.target = target;
+	}
+
+	public int getTarget() {
+		return target;
 	}
 
 	@Override
@@ -34,7 +40,7 @@ public final class RobotAttackObjectAction implements Action<RobotModel> {
 		final AttackableModel targetModel = (AttackableModel) attacker.getGame().getModelById(target);
 		if (targetModel != null) {
 			for (Direction dir : Direction.values()) {
-				if (attacker.loc.add(dir).equals(targetModel.loc)) {
+				if (attacker.getLocation().add(dir).equals(targetModel.getLocation())) {
 					targetModel.attack(3);
 					break;
 				}
@@ -26,6 +26,10 @@ public final class RobotMoveAction implements Action<RobotModel> {
 		this.dir = dir;
 	}
 
+	public Direction getDirection() {
+		return dir;
+	}
+
 	@Override
 	public void perform(RobotModel target) {
 		if (dir != null) {
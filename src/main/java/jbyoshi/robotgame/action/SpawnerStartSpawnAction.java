@@ -16,20 +16,12 @@
  */
 package jbyoshi.robotgame.action;
 
-import java.util.*;
-
 import jbyoshi.robotgame.model.*;
 
 public final class SpawnerStartSpawnAction implements Action<SpawnerModel> {
-	private final UUID id;
-
-	public SpawnerStartSpawnAction(RobotModel beingSpawned) {
-		this.id = beingSpawned.getId();
-	}
-
 	@Override
 	public void perform(SpawnerModel target) {
-		target.startSpawn(id);
+		target.startSpawn();
 	}
 
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame.api;
+
+import java.util.Optional;
+
+/**
+ * The shortest paths from every point in the world to the nearest of a set of
+ * targets. Once it has been made, following it costs nothing, so any number of
+ * robots can share one.
+ */
+public final class FlowField {
+    private final int[] distances;
+    private final Direction[] directions;
+
+    /**
+     * Creates a flow field. Both arrays are indexed by
+     * {@code x * Game.WORLD_SIZE + y}.
+     *
+     * @param distances The length of the path from each point, or -1 where no
+     *                  target can be reached
+     * @param directions The first step of the path from each point, or null at
+     *                   the targets and where no target can be reached
+     */
+    public FlowField(int[] distances, Direction[] directions) {
+        if (distances.length != Game.WORLD_SIZE * Game.WORLD_SIZE || directions.length != distances.length) {
+            throw new IllegalArgumentException("Wrong size");
+        }
+        this.distances = distances;
+        this.directions = directions;
+    }
+
+    public boolean canReach(Located from) {
+        return getDistance(from) >= 0;
+    }
+
+    /**
+     * Gets the length of the path from a point. Like the other paths in the
+     * game, moving through a cell that is in use counts for more than moving
+     * through an empty one.
+     *
+     * @param from The point to start at
+     * @return The length, or -1 if no target can be reached
+     */
+    public int getDistance(Located from) {
+        return distances[index(from)];
+    }
+
+    /**
+     * Gets the direction to move in to get closer to the nearest target.
+     *
+     * @param from The point to start at
+     * @return The direction, or an empty optional if the point is a target or
+     *         no target can be reached
+     */
+    public Optional<Direction> getDirection(Located from) {
+        return Optional.ofNullable(directions[index(from)]);
+    }
+
+    private static int index(Located loc) {
+        Point point = loc.getLocation();
+        return point.getX() * Game.WORLD_SIZE + point.getY();
+    }
+}
@@ -20,7 +20,12 @@ import java.util.*;
 import java.util.function.Predicate;
 
 public interface Game {
-	int WORLD_SIZE = 50;
+	/**
+	 * The width and height of the world. It is 50 unless the
+	 * {@code game.worldSize} system property says otherwise, and it is the same
+	 * for every game in the same program.
+	 */
+	int WORLD_SIZE = Integer.getInteger("game.worldSize", 50);
 
 	default boolean isWalkable(Point loc) {
 		return !isWall(loc);
@@ -40,6 +45,17 @@ public interface Game {
 
 	Set<? extends ObjectInGame> getObjectsNear(Located loc, int distance);
 
+	/**
+	 * Finds the objects near each of the given locations, like calling
+	 * {@link #getObjectsNear(Located, int)} for each of them, but looking
+	 * through the game only once.
+	 *
+	 * @param locs The locations to look around
+	 * @param distance How far to look from each location
+	 * @return The objects near each location
+	 */
+	<L extends Located> Map<L, Set<? extends ObjectInGame>> getObjectsNearEach(Collection<L> locs, int distance);
+
 	default Optional<Path> createPath(Located start, Located end) {
 		return createPath(start, end, this::isWalkable);
 	}
@@ -63,5 +79,47 @@ public interface Game {
 	<T extends ObjectInGame> Optional<T> findNearest(Located start, Class<T> type, Predicate<T> acceptTarget,
 													 Predicate<Point> acceptLocation);
 
+	default <L extends Located, T extends ObjectInGame> Map<L, T> findNearestToEach(Collection<L> starts,
+																					Class<T> type) {
+		return findNearestToEach(starts, type, target -> true);
+	}
+
+	default <L extends Located, T extends ObjectInGame> Map<L, T> findNearestToEach(Collection<L> starts,
+																					Class<T> type,
+																					Predicate<T> acceptTarget) {
+		return findNearestToEach(starts, type, acceptTarget, this::isWalkable);
+	}
+
+	/**
+	 * Finds the nearest matching object to each of the given starting points,
+	 * like calling {@link #findNearest(Located, Class, Predicate, Predicate)}
+	 * for each of them, but with only one search. When several objects are
+	 * equally near, which one is chosen may differ from {@code findNearest}.
+	 *
+	 * @param starts The points to start from
+	 * @param type The type of object to look for
+	 * @param acceptTarget Which objects to look for
+	 * @param acceptLocation Which locations can be walked through
+	 * @return The nearest object to each starting point. Starting points that
+	 *         can't reach any of the objects are left out.
+	 */
+	<L extends Located, T extends ObjectInGame> Map<L, T> findNearestToEach(Collection<L> starts, Class<T> type,
+																			Predicate<T> acceptTarget,
+																			Predicate<Point> acceptLocation);
+
+	default FlowField getFlowField(Located target) {
+		return getFlowField(Collections.singleton(target));
+	}
+
+	/**
+	 * Finds the shortest paths to the nearest of the given targets from every
+	 * point at once. The result is kept until the next tick, so every robot
+	 * heading to the same place shares one search.
+	 *
+	 * @param targets The targets
+	 * @return The paths
+	 */
+	FlowField getFlowField(Collection<? extends Located> targets);
+
 	boolean isWall(Point loc);
 }
@@ -21,9 +21,15 @@ import jbyoshi.robotgame.model.AttackableModel;
 import java.awt.*;
 
 abstract class AttackableSprite<T extends AttackableModel> extends Sprite<T> {
-	private int lastHealth = -1;
-	AttackableSprite(GameDraw game, T model, SpriteState state) {
-		super(game, model, state);
+	private final int lastHealth;
+	AttackableSprite(GameDraw game, T model, SpriteState state, AttackableSprite<T> previous) {
+		super(game, model, state, previous);
+		lastHealth = previous == null ? -1 : previous.model.health;
+	}
+
+	@Override
+	boolean isAnimated() {
+		return super.isAnimated() || model.health < lastHealth;
 	}
 
 	@Override
@@ -39,15 +45,8 @@ abstract class AttackableSprite<T extends AttackableModel> extends Sprite<T> {
 			drawAttackable(g, renderTicks);
 			return;
 		}
-		g.setComposite(createShadeComposite(new Color(1.0f, 0.0f, 0.0f, shade)));
-		drawAttackable(g, renderTicks);
+		drawAttackable(new TintGraphics(g, Color.RED, shade), renderTicks);
 	}
 
 	protected abstract void drawAttackable(Graphics2D g, float renderTicks);
-
-	@Override
-	void preTick() {
-		super.preTick();
-		lastHealth = model.health;
-	}
 }
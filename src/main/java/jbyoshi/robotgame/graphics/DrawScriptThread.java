@@ -42,8 +42,8 @@ public final class DrawScriptThread extends ScriptThread {
     }
 
     @Override
-    public void tickEnded(List<BoundAction> allActions) {
-        super.tickEnded(allActions);
-        draw.tick(allActions);
+    public void tickEnded(List<BoundAction> allActions, GameModel snapshot) {
+        super.tickEnded(allActions, snapshot);
+        draw.tick(snapshot);
     }
 }
@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame.graphics;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jbyoshi.robotgame.action.BoundAction;
+import jbyoshi.robotgame.impl.PlayerImpl;
+import jbyoshi.robotgame.model.GameModel;
+import jbyoshi.robotgame.server.PlayerConnection;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Saves pictures of a game to a directory, as numbered PNG files. This works
+ * without a screen, so games can be recorded with
+ * {@code java.awt.headless=true}.
+ * <p>
+ * The game thread only turns each snapshot into a frame of sprites; drawing
+ * happens on one background thread and saving on another, so recording
+ * doesn't slow the game down. If they fall behind, the frames wait in a queue
+ * until the game has ended. Frames don't keep their snapshots, so the queue
+ * stays small even on big worlds. If anything goes wrong, recording stops
+ * and {@link #close()} reports it; the game itself carries on.
+ */
+public final class FrameRecorder implements Closeable {
+    // Enough for one image to be drawn while others are being saved.
+    private static final int IMAGES = 3;
+
+    private final Path dir;
+    private final double zoom;
+    private final int subFrames;
+    private final ExecutorService renderer;
+    private final ExecutorService writer;
+    private final BlockingQueue<BufferedImage> freeImages = new ArrayBlockingQueue<>(IMAGES);
+    private volatile IOException error;
+
+    // Only used by the thread running the game.
+    private GameDraw draw;
+    // Only used by the renderer thread.
+    private int frames;
+
+    /**
+     * Creates a recorder.
+     *
+     * @param dir The directory to save the pictures in. It is created if it
+     *            doesn't exist.
+     * @param zoom The size of each grid spot in the pictures, in pixels
+     * @param subFrames How many pictures to save for each tick. More than one
+     *                  shows the robots moving from one spot to the next.
+     * @throws IOException If the directory can't be created
+     */
+    public FrameRecorder(Path dir, double zoom, int subFrames) throws IOException {
+        if (zoom <= 0 || subFrames < 1) {
+            throw new IllegalArgumentException("zoom = " + zoom + ", subFrames = " + subFrames);
+        }
+        this.dir = Files.createDirectories(dir);
+        this.zoom = zoom;
+        this.subFrames = subFrames;
+        renderer = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("Frame Renderer %d")
+                .setDaemon(true).build());
+        writer = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("Frame Writer %d")
+                .setDaemon(true).build());
+    }
+
+    /**
+     * Records the game seen by a player. The returned connection passes
+     * everything on to the player.
+     */
+    public PlayerConnection watch(PlayerConnection player) {
+        return new PlayerConnection() {
+            @Override
+            public PlayerImpl getPlayerObject() {
+                return player.getPlayerObject();
+            }
+
+            @Override
+            public void gameStarted(GameModel model) {
+                player.gameStarted(model);
+                try {
+                    draw = new GameDraw(model);
+                } catch (RuntimeException e) {
+                    fail(e);
+                    return;
+                }
+                GameDraw draw = FrameRecorder.this.draw;
+                GameDraw.Frame frame = draw.getFrame();
+                renderer.execute(() -> {
+                    try {
+                        draw.component.showOffscreen(zoom);
+                        int size = draw.component.getWidth();
+                        for (int i = 0; i < IMAGES; i++) {
+                            freeImages.add(new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB));
+                        }
+                    } catch (RuntimeException e) {
+                        // Nothing else is drawn, so nothing waits for the images.
+                        fail(e);
+                        return;
+                    }
+                    render(draw, frame, 1);
+                });
+            }
+
+            @Override
+            public CompletableFuture<Set<BoundAction>> startTick() {
+                return player.startTick();
+            }
+
+            @Override
+            public void tickEnded(List<BoundAction> allActions, GameModel snapshot) {
+                player.tickEnded(allActions, snapshot);
+                GameDraw draw = FrameRecorder.this.draw;
+                if (draw == null || error != null) {
+                    return;
+                }
+                // Making the sprites is quick, and the frame doesn't keep the
+                // snapshot, so only small frames wait in the renderer's queue.
+                GameDraw.Frame frame;
+                try {
+                    frame = draw.update(snapshot);
+                } catch (RuntimeException e) {
+                    fail(e);
+                    return;
+                }
+                renderer.execute(() -> {
+                    for (int i = 1; i <= subFrames; i++) {
+                        render(draw, frame, i / (float) subFrames);
+                    }
+                });
+            }
+
+            @Override
+            public void gameEnded() {
+                player.gameEnded();
+            }
+        };
+    }
+
+    private void render(GameDraw draw, GameDraw.Frame frame, float renderTicks) {
+        if (error != null) {
+            return;
+        }
+        BufferedImage image;
+        try {
+            image = freeImages.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        boolean drawn = false;
+        Graphics2D g = image.createGraphics();
+        try {
+            draw.component.paintOffscreen(g, frame, renderTicks);
+            drawn = true;
+        } catch (RuntimeException e) {
+            fail(e);
+        } finally {
+            g.dispose();
+            if (!drawn) {
+                freeImages.add(image);
+            }
+        }
+        if (!drawn) {
+            return;
+        }
+        Path file = dir.resolve(String.format("frame-%06d.png", frames++));
+        writer.execute(() -> {
+            if (error != null) {
+                freeImages.add(image);
+                return;
+            }
+            try (OutputStream out = Files.newOutputStream(file)) {
+                if (!ImageIO.write(image, "png", out)) {
+                    throw new IOException("No PNG writer is available");
+                }
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            } finally {
+                freeImages.add(image);
+            }
+        });
+    }
+
+    /**
+     * Stops recording after something went wrong. Only the first problem is
+     * kept, to be thrown by {@link #close()}.
+     */
+    private synchronized void fail(Exception e) {
+        if (error == null) {
+            error = e instanceof IOException ? (IOException) e : new IOException("Could not record the game", e);
+        }
+    }
+
+    /**
+     * Gets the number of pictures that were drawn. This should only be called
+     * after {@link #close()}.
+     */
+    public int getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * Waits until every picture has been saved.
+     *
+     * @throws IOException If any of the pictures couldn't be saved
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            renderer.shutdown();
+            renderer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            writer.shutdown();
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            renderer.shutdownNow();
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while saving the pictures", e);
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
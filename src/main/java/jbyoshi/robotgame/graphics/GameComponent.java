@@ -21,18 +21,27 @@ import jbyoshi.robotgame.api.Game;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.util.function.Consumer;
 
 final class GameComponent extends JComponent {
     private static final long serialVersionUID = 1L;
+    /**
+     * The largest zoom that keeps each layer image within 2048 pixels across.
+     * Every layer holds the whole world, so on big worlds this is what stops
+     * them from taking hundreds of megabytes.
+     */
+    private static final double MAX_ZOOM = 2048.0 / (Game.WORLD_SIZE + 2);
     private final GameDraw draw;
     private int lastMouseX, lastMouseY;
     private double drawX, drawY;
-    private double zoom = 16.0;
-    private BufferLayer[] layers;
-    private final Object bufferLock = new Object();
+    private double zoom = Math.min(16.0, MAX_ZOOM);
+    private volatile BufferLayer[] layers;
+    // The layers are put together here, then copied to the screen in one go.
+    private VolatileImage backBuffer;
+    // Only runs while a new frame is being animated.
+    private final Timer animation = new Timer(getFrameDelay(), e -> animate());
 
     GameComponent(GameDraw draw) {
         this.draw = draw;
@@ -64,6 +73,7 @@ final class GameComponent extends JComponent {
                     double newPixelSize = getPixelSize();
                     drawX = wrapToGameSize(drawX - e.getX() * oldPixelSize + e.getX() * newPixelSize);
                     drawY = wrapToGameSize(drawY - e.getY() * oldPixelSize + e.getY() * newPixelSize);
+                    doRepaint();
                 }
             }
         };
@@ -79,13 +89,16 @@ final class GameComponent extends JComponent {
                 double newPixelSize = getPixelSize();
                 drawX = wrapToGameSize(drawX - getWidth() / 2 * oldPixelSize + getWidth() / 2 * newPixelSize);
                 drawY = wrapToGameSize(drawY - getHeight() / 2 * oldPixelSize + getHeight() / 2 * newPixelSize);
-                repaint();
+                // The zoom may have changed, so the layers have to be rebuilt.
+                doRepaint();
             }
         });
     }
 
     private void revalidateZoom() {
-        zoom = Math.max(zoom, Math.min(getWidth() / 2.0 / Game.WORLD_SIZE, getHeight() / 2.0 / Game.WORLD_SIZE));
+        // Filling the window comes first, even if the layers get bigger.
+        zoom = Math.max(Math.min(zoom, MAX_ZOOM),
+                Math.min(getWidth() / 2.0 / Game.WORLD_SIZE, getHeight() / 2.0 / Game.WORLD_SIZE));
     }
 
     private double wrapToGameSize(double value) {
@@ -96,27 +109,96 @@ final class GameComponent extends JComponent {
 
     @Override
     public void paintComponent(Graphics basicGraphics) {
-        Graphics2D g = (Graphics2D) basicGraphics;
-        g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 24));
-
-        synchronized (bufferLock) {
-            if (layers == null) {
-                // Too slow.
-                layers = draw.updateBuffer();
+        GraphicsConfiguration config = getGraphicsConfiguration();
+        if (config == null || getWidth() <= 0 || getHeight() <= 0) {
+            // Not on a screen, so there is nothing to accelerate.
+            paintLayers((Graphics2D) basicGraphics);
+            return;
+        }
+        do {
+            if (backBuffer == null || backBuffer.getWidth() != getWidth() || backBuffer.getHeight() != getHeight()
+                    || backBuffer.validate(config) == VolatileImage.IMAGE_INCOMPATIBLE) {
+                if (backBuffer != null) {
+                    backBuffer.flush();
+                }
+                backBuffer = config.createCompatibleVolatileImage(getWidth(), getHeight());
             }
-            for (BufferLayer layer : layers) {
-                layer.paint(this, g);
+            Graphics2D g = backBuffer.createGraphics();
+            try {
+                paintLayers(g);
+            } finally {
+                g.dispose();
             }
+            basicGraphics.drawImage(backBuffer, 0, 0, null);
+        } while (backBuffer.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    private void paintLayers(Graphics2D g) {
+        BufferLayer[] layers = this.layers;
+        if (layers == null) {
+            // Too slow.
+            layers = this.layers = draw.updateBuffer();
         }
+        paintLayers(g, layers);
+    }
 
-        new SwingWorker<Void, Void>() {
-            @Override
-            protected Void doInBackground() throws Exception {
-                Thread.sleep(10);
-                doRepaint();
-                return null;
+    private void paintLayers(Graphics2D g, BufferLayer[] layers) {
+        g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 24));
+        for (BufferLayer layer : layers) {
+            layer.paint(this, g);
+        }
+    }
+
+    /**
+     * Sets the component up to be painted into an image instead of being
+     * shown, with the whole world in view at the given zoom.
+     */
+    void showOffscreen(double zoom) {
+        // Nothing else resizes it, and the resize events would be handled on
+        // the event dispatch thread while another thread paints.
+        for (ComponentListener listener : getComponentListeners()) {
+            removeComponentListener(listener);
+        }
+        this.zoom = zoom;
+        drawX = drawY = 0;
+        int size = (int) Math.ceil(getGameSize());
+        setSize(size, size);
+    }
+
+    /**
+     * Paints the game without the component being shown, after
+     * {@link #showOffscreen(double)}.
+     *
+     * @param frame The frame to paint
+     * @param renderTicks How far through the frame to draw it
+     */
+    void paintOffscreen(Graphics2D g, GameDraw.Frame frame, float renderTicks) {
+        paintLayers(g, draw.updateBuffer(frame, renderTicks));
+    }
+
+    /**
+     * Gets how long to wait between frames of animation: one refresh of the
+     * screen, or a 60th of a second if that isn't known.
+     */
+    private static int getFrameDelay() {
+        if (!GraphicsEnvironment.isHeadless()) {
+            int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode()
+                    .getRefreshRate();
+            if (rate != DisplayMode.REFRESH_RATE_UNKNOWN && rate > 0) {
+                return Math.max(1000 / rate, 1);
             }
-        }.execute();
+        }
+        return 1000 / 60;
+    }
+
+    private void animate() {
+        // One last paint once the animation is over, so it ends exactly on the
+        // new tick.
+        if (!draw.isAnimating()) {
+            animation.stop();
+        }
+        doRepaint();
     }
 
     double getGameSize() {
@@ -132,26 +214,63 @@ final class GameComponent extends JComponent {
     }
 
     void doRepaint() {
-        synchronized (bufferLock) {
-            layers = draw.updateBuffer();
-        }
+        // Rebuilt by paintComponent, so the buffer is only ever drawn on by
+        // the event dispatch thread.
+        layers = null;
         repaint();
     }
 
+    /**
+     * Called when a new frame has been published. The buffer is rebuilt when
+     * it is next painted, so the thread running the game doesn't have to wait
+     * for it, and then repainted until the frame has finished animating.
+     * Nothing is painted after that until something changes.
+     */
+    void frameChanged() {
+        SwingUtilities.invokeLater(() -> {
+            doRepaint();
+            animation.start();
+        });
+    }
+
     BufferLayer createLayer(Consumer<Graphics2D> drawCode) {
-        double size = getGameSize();
-        int imgSize = (int) Math.ceil(size + 2 * zoom);
-        BufferedImage img = new BufferedImage(imgSize, imgSize, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage img = createLayerImage();
         Graphics2D imgGraphics = img.createGraphics();
         imgGraphics.translate(zoom, zoom);
         drawCode.accept(imgGraphics);
         imgGraphics.dispose();
+        return tileLayer(img);
+    }
+
+    /**
+     * Creates an empty image for a layer at the current zoom. It has room for
+     * the whole world plus one grid spot on each side. When the component is
+     * on a screen, the image uses that screen's pixel format, so it can be
+     * copied to it without being converted.
+     */
+    BufferedImage createLayerImage() {
+        int imgSize = (int) Math.ceil(getGameSize() + 2 * zoom);
+        GraphicsConfiguration config = getGraphicsConfiguration();
+        if (config == null) {
+            return new BufferedImage(imgSize, imgSize, BufferedImage.TYPE_INT_ARGB);
+        }
+        return config.createCompatibleImage(imgSize, imgSize, Transparency.TRANSLUCENT);
+    }
+
+    /**
+     * Creates a layer that paints an image made by {@link #createLayerImage()}
+     * over and over, to fill the component. The image is read each time the
+     * layer is painted, so it can be drawn on later.
+     */
+    BufferLayer tileLayer(BufferedImage img) {
+        double size = getGameSize();
         return (comp, g) -> {
+            // Whole pixels only, so each tile is a plain copy instead of a
+            // transformed draw.
             for (double x1 = -size; x1 < getWidth(); x1 += size) {
+                int x = (int) Math.round(drawX * zoom + x1 - zoom);
                 for (double y1 = -size; y1 < getHeight(); y1 += size) {
-                    AffineTransform tx = new AffineTransform();
-                    tx.translate(drawX * zoom + x1 - zoom, drawY * zoom + y1 - zoom);
-                    g.drawRenderedImage(img, tx);
+                    g.drawImage(img, x, (int) Math.round(drawY * zoom + y1 - zoom), null);
                 }
             }
         };
@@ -22,126 +22,205 @@ import java.util.*;
 import java.util.List;
 import java.util.concurrent.*;
 
-import jbyoshi.robotgame.action.BoundAction;
+import jbyoshi.robotgame.impl.PlayerImpl;
 import jbyoshi.robotgame.model.*;
 
 final class GameDraw {
-	private final GameModel game;
-	private final Map<Model, Sprite<?>> sprites = new TreeMap<>(
-			Comparator.<Model, Boolean>comparing(model -> !(model instanceof RobotModel))
-			.thenComparing(Model::getId));
-	private long paintStart = System.nanoTime();
+	/**
+	 * How long it takes to move from one tick to the next on the screen.
+	 */
+	private static final long ANIMATION_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+	private static final Comparator<Sprite<?>> drawOrder = Comparator
+			.<Sprite<?>, Boolean>comparing(sprite -> !(sprite.model instanceof RobotModel))
+			.thenComparingInt(sprite -> sprite.model.getId());
+
+	/**
+	 * The latest tick. The simulation builds a whole new frame for each tick
+	 * and then publishes it here, so painting never has to wait for it.
+	 */
+	private volatile Frame frame;
 	final GameComponent component = new GameComponent(this);
 
-	GameDraw(GameModel basedOn) {
-		game = new GameModel(basedOn);
-		game.getAllModels().forEach(model -> this.createSprite(model, SpriteState.CONTINUOUS));
-		sprites.values().forEach(Sprite::preTick);
-		sprites.values().forEach(Sprite::postTick);
+	// Only used while painting, by the event dispatch thread.
+	private final SpriteLayer spriteLayer = new SpriteLayer(component);
+	private GameComponent.BufferLayer wallLayer, borderLayer;
+	private double staticLayerZoom;
+
+	GameDraw(GameModel snapshot) {
+		Map<Integer, Sprite<?>> initial = new HashMap<>();
+		for (Model model : snapshot.getAllModels()) {
+			Sprite<?> sprite = createSprite(model, SpriteState.CONTINUOUS, null);
+			// Starts out as if nothing changed in the previous tick.
+			initial.put(model.getId(), createSprite(model, SpriteState.CONTINUOUS, sprite));
+		}
+		frame = publish(snapshot, initial);
 	}
 
-	void tick(List<BoundAction> actions) {
-		if (game == null) {
-			throw new IllegalStateException("setup() has not been called!");
-		}
+	/**
+	 * Moves on to the next tick.
+	 *
+	 * @param snapshot A read-only snapshot of the game after the tick
+	 */
+	void tick(GameModel snapshot) {
+		update(snapshot);
+		component.frameChanged();
+	}
 
-		sprites.values().forEach(Sprite::preTick);
-
-		// Keep this synchronized block fast. It can hold up the event thread.
-		synchronized (game) {
-			game.preTick();
-			game.postTick(actions);
-
-			Set<Model> models = new HashSet<>(game.getAllModels());
-			for (Iterator<Sprite<?>> it = sprites.values().iterator(); it.hasNext(); ) {
-				Sprite<?> sprite = it.next();
-				if (models.remove(sprite.model)) {
-					sprite.state = SpriteState.CONTINUOUS;
-				} else if (sprite.state == SpriteState.DEAD) {
-					it.remove();
-				} else {
-					sprite.state = SpriteState.DEAD;
-				}
+	/**
+	 * Moves on to the next tick without repainting the component, for drawing
+	 * the game somewhere other than the screen.
+	 *
+	 * @param snapshot A read-only snapshot of the game after the tick
+	 * @return The new frame
+	 */
+	Frame update(GameModel snapshot) {
+		Frame previous = frame;
+		Map<Integer, Sprite<?>> sprites = new HashMap<>();
+		for (Sprite<?> sprite : previous.sprites) {
+			if (sprite.state != SpriteState.DEAD && snapshot.getModelById(sprite.model.getId()) == null) {
+				sprites.put(sprite.model.getId(), createSprite(sprite.model, SpriteState.DEAD, sprite));
 			}
-			models.forEach(model -> this.createSprite(model, SpriteState.NEW));
 		}
+		for (Model model : snapshot.getAllModels()) {
+			Sprite<?> old = previous.spritesById.get(model.getId());
+			sprites.put(model.getId(), createSprite(model, old == null ? SpriteState.NEW : SpriteState.CONTINUOUS, old));
+		}
+		return frame = publish(snapshot, sprites);
+	}
 
-		sprites.values().forEach(Sprite::postTick);
-		paintStart = System.nanoTime();
-		component.doRepaint();
+	/**
+	 * Gets the latest frame.
+	 */
+	Frame getFrame() {
+		return frame;
 	}
 
-	private void createSprite(Model model, SpriteState state) {
-		@SuppressWarnings("rawtypes")
-		Sprite sprite;
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private Sprite<?> createSprite(Model model, SpriteState state, Sprite previous) {
 		if (model instanceof RobotModel) {
-            sprite = new RobotSprite(this, (RobotModel) model, state);
-        } else if (model instanceof SpawnerModel) {
-            sprite = new SpawnerSprite(this, (SpawnerModel) model, state);
-        } else {
-            throw new AssertionError("Unknown model " + model.getClass().getName());
-        }
-
-		sprites.put(model, sprite);
-		sprite.postTick();
+			return new RobotSprite(this, (RobotModel) model, state, (RobotSprite) previous);
+		} else if (model instanceof SpawnerModel) {
+			return new SpawnerSprite(this, (SpawnerModel) model, state, (SpawnerSprite) previous);
+		} else {
+			throw new AssertionError("Unknown model " + model.getClass().getName());
+		}
+	}
+
+	private static Frame publish(GameModel snapshot, Map<Integer, Sprite<?>> sprites) {
+		sprites.values().forEach(sprite -> sprite.postTick(sprites));
+		List<Sprite<?>> ordered = new ArrayList<>(sprites.values());
+		ordered.sort(drawOrder);
+		return new Frame(snapshot, ordered, sprites, System.nanoTime());
+	}
+
+	/**
+	 * Determines whether the latest frame is still moving from the previous
+	 * tick to the current one.
+	 */
+	boolean isAnimating() {
+		return System.nanoTime() - frame.paintStart < ANIMATION_NANOS;
 	}
 
+	/**
+	 * Gets the layers to paint, as far through the latest frame as the time
+	 * since it was published. This must only be called from the event
+	 * dispatch thread.
+	 */
 	GameComponent.BufferLayer[] updateBuffer() {
-		float renderTicks = Math.min((System.nanoTime() - paintStart) / (float) TimeUnit.MILLISECONDS.toNanos(500), 1);
-
-		synchronized (game) {
-			String message;
-			Color messageColor;
-			if (renderTicks == 1 && !game.isRunning()) {
-				if (game.getWinner() == null) {
-					message = game.ticks == GameModel.MAX_TICKS ? "Time's up!" : "It's a tie!";
-					messageColor = Color.WHITE;
-				} else {
-					message = game.getWinner().getName() + " wins!";
-					messageColor = game.getWinner().getColor();
-				}
+		Frame frame = this.frame;
+		return updateBuffer(frame, Math.min((System.nanoTime() - frame.paintStart) / (float) ANIMATION_NANOS, 1));
+	}
+
+	/**
+	 * Gets the layers to paint. This must only be called by one thread: the
+	 * event dispatch thread, or the thread drawing the game offscreen. Frames
+	 * have to be drawn in the order they were made.
+	 *
+	 * @param frame The frame to draw
+	 * @param renderTicks How far through the frame to draw it, from 0 (the
+	 *                    previous tick) to 1 (the frame's tick)
+	 */
+	GameComponent.BufferLayer[] updateBuffer(Frame frame, float renderTicks) {
+
+		String message;
+		Color messageColor;
+		if (renderTicks == 1 && !frame.running) {
+			if (frame.winner == null) {
+				message = frame.ticks == GameModel.MAX_TICKS ? "Time's up!" : "It's a tie!";
+				messageColor = Color.WHITE;
 			} else {
-				message = null;
-				messageColor = null;
+				message = frame.winner.getName() + " wins!";
+				messageColor = frame.winner.getColor();
 			}
+		} else {
+			message = null;
+			messageColor = null;
+		}
 
-			int ticksLeft = GameModel.MAX_TICKS - game.ticks;
-			String timeLeft = String.format("%02d:%02d", ticksLeft / 60, ticksLeft % 60);
+		int ticksLeft = GameModel.MAX_TICKS - frame.ticks;
+		String timeLeft = String.format("%02d:%02d", ticksLeft / 60, ticksLeft % 60);
 
-			return new GameComponent.BufferLayer[] {component.createLayer(g -> {
+		if (wallLayer == null || staticLayerZoom != component.getGridSpotSize()) {
+			// The walls never change during a game, so these are only drawn
+			// again when zooming.
+			staticLayerZoom = component.getGridSpotSize();
+			wallLayer = component.createLayer(g -> {
 				g.setColor(RGColors.DARK_GRAY);
 				g.fill(new Rectangle2D.Double(0, 0, component.getGameSize(), component.getGameSize()));
 				g.scale(component.getGridSpotSize(), component.getGridSpotSize());
 				g.setColor(new Color(40, 40, 40));
-				for (int x = 0; x < game.map.length; x++) {
-					for (int y = 0; y < game.map[0].length; y++) {
-						if (game.map[x][y]) {
+				boolean[][] map = frame.map;
+				for (int x = 0; x < map.length; x++) {
+					for (int y = 0; y < map[0].length; y++) {
+						if (map[x][y]) {
 							g.fillRect(x, y, 1, 1);
 						}
 					}
 				}
-			}), component.createLayer(g -> {
-				g.scale(component.getGridSpotSize(), component.getGridSpotSize());
-				sprites.values().forEach(sprite -> sprite.draw((Graphics2D) g.create(), renderTicks));
-			}), component.createLayer(g -> {
+			});
+			borderLayer = component.createLayer(g -> {
 				g.setColor(Color.BLUE);
 				g.draw(new Rectangle2D.Double(0, 0, component.getGameSize(), component.getGameSize()));
-			}), (comp, g) -> {
-				g.setColor(Color.WHITE);
-				g.drawString(timeLeft, comp.getWidth() / 2 - g.getFontMetrics().stringWidth(timeLeft) / 2,
-						10 + g.getFontMetrics().getHeight());
-
-				if (message != null) {
-					g.setColor(messageColor);
-					g.drawString(message, comp.getWidth() / 2 - g.getFontMetrics().stringWidth(message) / 2,
-							comp.getHeight() / 2 - g.getFontMetrics().getHeight() / 2);
-				}
-			}};
+			});
 		}
+
+		return new GameComponent.BufferLayer[] {wallLayer,
+				spriteLayer.update(frame.sprites, frame.spritesById, renderTicks), borderLayer, (comp, g) -> {
+			g.setColor(Color.WHITE);
+			g.drawString(timeLeft, comp.getWidth() / 2 - g.getFontMetrics().stringWidth(timeLeft) / 2,
+					10 + g.getFontMetrics().getHeight());
+
+			if (message != null) {
+				g.setColor(messageColor);
+				g.drawString(message, comp.getWidth() / 2 - g.getFontMetrics().stringWidth(message) / 2,
+						comp.getHeight() / 2 - g.getFontMetrics().getHeight() / 2);
+			}
+		}};
 	}
 
-	@SuppressWarnings("unchecked")
-	<M extends Model, S extends Sprite<M>> S getSprite(M model) {
-		return (S) sprites.get(model);
+	/**
+	 * Everything needed to draw one tick. Nothing in a frame changes after it
+	 * has been published. Frames don't keep the snapshot they were made from,
+	 * which has indexes the size of the world, so queued frames stay small.
+	 */
+	static final class Frame {
+		final boolean[][] map;
+		final int ticks;
+		final boolean running;
+		final PlayerImpl winner;
+		final List<Sprite<?>> sprites;
+		final Map<Integer, Sprite<?>> spritesById;
+		final long paintStart;
+
+		Frame(GameModel game, List<Sprite<?>> sprites, Map<Integer, Sprite<?>> spritesById, long paintStart) {
+			// The map never changes, and is shared between snapshots.
+			map = game.map;
+			ticks = game.ticks;
+			running = game.isRunning();
+			winner = game.getWinner();
+			this.sprites = sprites;
+			this.spritesById = spritesById;
+			this.paintStart = paintStart;
+		}
 	}
 }
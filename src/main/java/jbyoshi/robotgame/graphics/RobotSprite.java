@@ -22,8 +22,8 @@ import java.awt.geom.*;
 import jbyoshi.robotgame.model.*;
 
 final class RobotSprite extends AttackableSprite<RobotModel> {
-	RobotSprite(GameDraw game, RobotModel model, SpriteState state) {
-		super(game, model, state);
+	RobotSprite(GameDraw game, RobotModel model, SpriteState state, RobotSprite previous) {
+		super(game, model, state, previous);
 	}
 
 	@Override
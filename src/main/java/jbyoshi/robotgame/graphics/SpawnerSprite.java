@@ -18,15 +18,35 @@ package jbyoshi.robotgame.graphics;
 
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
+import java.util.Map;
 
 import jbyoshi.robotgame.model.*;
 
 final class SpawnerSprite extends AttackableSprite<SpawnerModel> {
-	private RobotModel spawning;
+	/**
+	 * The ID of the robot that was spawning at the start of the tick, or -1.
+	 */
+	private final int spawning;
 	private int totalCountdown;
 
-	SpawnerSprite(GameDraw game, SpawnerModel model, SpriteState state) {
-		super(game, model, state);
+	SpawnerSprite(GameDraw game, SpawnerModel model, SpriteState state, SpawnerSprite previous) {
+		super(game, model, state, previous);
+		if (previous == null) {
+			spawning = -1;
+			return;
+		}
+		if (previous.spawning >= 0) totalCountdown = previous.totalCountdown;
+		spawning = spawningId(previous.model);
+		if (previous.model.totalCountdown > 0) totalCountdown = previous.model.totalCountdown;
+	}
+
+	private static int spawningId(SpawnerModel model) {
+		return model.spawningRobot == null ? -1 : model.spawningRobot.getId();
+	}
+
+	@Override
+	boolean isAnimated() {
+		return super.isAnimated() || model.spawningRobot != null || spawning >= 0;
 	}
 
 	@Override
@@ -34,10 +54,10 @@ final class SpawnerSprite extends AttackableSprite<SpawnerModel> {
 		Color playerColor = model.player.getColor();
 		graphics.setColor(playerColor);
 		graphics.fillRect(0, 0, 1, 1);
-		if (model.spawningRobot != null || (spawning != null && renderTicks < 0.5)) {
+		if (model.spawningRobot != null || (spawning >= 0 && renderTicks < 0.5)) {
 			graphics.setColor(Color.BLACK.brighter());
 			if (state == SpriteState.CONTINUOUS) {
-				if (spawning == null && renderTicks < 0.5) {
+				if (spawning < 0 && renderTicks < 0.5) {
 					// Fade in
 					graphics.setColor(Sprite.fade(playerColor, graphics.getColor(), renderTicks * 2));
 				} else if (model.spawningRobot == null) {
@@ -49,7 +69,7 @@ final class SpawnerSprite extends AttackableSprite<SpawnerModel> {
 			graphics.fill(new Rectangle2D.Double(pixel, pixel, 1 - 2 * pixel, 1 - 2 * pixel));
 			graphics.setColor(playerColor);
 			double height;
-			if (spawning != null && model.spawningRobot == null) {
+			if (spawning >= 0 && model.spawningRobot == null) {
 				height = 1;
 			} else {
 				height = (totalCountdown - model.countdown - 1 + Math.min(renderTicks, 1)) / (totalCountdown - 1);
@@ -61,20 +81,15 @@ final class SpawnerSprite extends AttackableSprite<SpawnerModel> {
 	}
 
 	@Override
-	public void preTick() {
-		super.preTick();
-		if (spawning == null) totalCountdown = 0;
-		spawning = model.spawningRobot;
-		if (model.totalCountdown > 0) totalCountdown = model.totalCountdown;
-	}
-
-	@Override
-	public void postTick() {
-		super.postTick();
-		if (spawning != null && model.spawningRobot != spawning) {
-			RobotSprite robot = game.getSprite(spawning);
-			robot.state = SpriteState.CONTINUOUS;
-			robot.lastLoc = model.loc;
+	void postTick(Map<Integer, Sprite<?>> sprites) {
+		super.postTick(sprites);
+		if (spawning >= 0 && spawningId(model) != spawning) {
+			// The robot has just come out of this spawner.
+			Sprite<?> robot = sprites.get(spawning);
+			if (robot != null) {
+				robot.state = SpriteState.CONTINUOUS;
+				robot.lastLoc = model.getLocation();
+			}
 		}
 		if (model.spawningRobot != null) {
 			totalCountdown = model.totalCountdown;
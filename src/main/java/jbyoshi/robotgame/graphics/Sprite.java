@@ -17,8 +17,7 @@
 package jbyoshi.robotgame.graphics;
 
 import java.awt.*;
-import java.awt.image.Raster;
-import java.awt.image.WritableRaster;
+import java.util.Map;
 
 import jbyoshi.robotgame.api.Game;
 import jbyoshi.robotgame.api.Point;
@@ -30,28 +29,57 @@ abstract class Sprite<T extends Model> {
 	SpriteState state;
 	Point lastLoc;
 
-	Sprite(GameDraw game, T model, SpriteState state) {
+	/**
+	 * Creates the sprite for a model in a new frame. Sprites are never changed
+	 * once their frame has been published, so the previous frame's sprite is
+	 * used to find out what changed during the tick.
+	 *
+	 * @param previous The sprite for the same model in the previous frame, or
+	 *                 null if the model is new
+	 */
+	Sprite(GameDraw game, T model, SpriteState state, Sprite<T> previous) {
 		this.game = game;
 		this.model = model;
 		this.state = state;
+		if (previous != null) {
+			lastLoc = previous.model.getLocation();
+		}
 	}
 
 	final void draw(Graphics2D g, float renderTicks) {
 		if (state == SpriteState.NEW || state == SpriteState.DEAD) {
 			g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, state == SpriteState.NEW ? renderTicks
 					: 1.0f - renderTicks));
-			g = new CompoundGraphics(g);
 		}
 
-		if (lastLoc == null) {
-			g.translate(model.loc.getX(), model.loc.getY());
-		} else {
-			g.translate(lastLoc.getX() + getChange(lastLoc.getX(), model.loc.getX()) * renderTicks,
-						lastLoc.getY() + getChange(lastLoc.getY(), model.loc.getY()) * renderTicks);
-		}
+		g.translate(getDrawX(renderTicks), getDrawY(renderTicks));
 		drawSprite(g, renderTicks);
 	}
 
+	/**
+	 * Gets where the left edge of the sprite is drawn. This is between -1 and
+	 * the world size, since a sprite moving across the edge of the world is
+	 * drawn partly outside of it.
+	 */
+	final double getDrawX(float renderTicks) {
+		int x = model.getLocation().getX();
+		return lastLoc == null ? x : lastLoc.getX() + getChange(lastLoc.getX(), x) * renderTicks;
+	}
+
+	final double getDrawY(float renderTicks) {
+		int y = model.getLocation().getY();
+		return lastLoc == null ? y : lastLoc.getY() + getChange(lastLoc.getY(), y) * renderTicks;
+	}
+
+	/**
+	 * Determines whether the sprite changes while its frame is being shown.
+	 * Sprites that aren't animated look the same the whole time, and the same
+	 * as the model's sprite did at the end of the previous frame.
+	 */
+	boolean isAnimated() {
+		return state != SpriteState.CONTINUOUS || (lastLoc != null && !lastLoc.equals(model.getLocation()));
+	}
+
 	private static int getChange(int prev, int next) {
 		int toLeft = prev - next;
 		while (toLeft < 0) toLeft += Game.WORLD_SIZE;
@@ -64,11 +92,12 @@ abstract class Sprite<T extends Model> {
 
 	abstract void drawSprite(Graphics2D g, float renderTicks);
 
-	void preTick() {
-		lastLoc = model.loc;
-	}
-
-	void postTick() {}
+	/**
+	 * Called once every sprite in the new frame has been created.
+	 *
+	 * @param sprites The sprites in the new frame, by model ID
+	 */
+	void postTick(Map<Integer, Sprite<?>> sprites) {}
 
 	static Color fade(Color start, Color end, double progress) {
 		return new Color((int) (start.getRed() + (end.getRed() - start.getRed()) * progress),
@@ -76,38 +105,4 @@ abstract class Sprite<T extends Model> {
 				(int) (start.getBlue() + (end.getBlue() - start.getBlue()) * progress));
 	}
 
-	static Composite createShadeComposite(Color shade) {
-		return (srcColorModel, dstColorModel, hints) -> new CompositeContext() {
-			final CompositeContext srcOverSrcSrc = AlphaComposite.SrcOver.createContext(srcColorModel, srcColorModel,
-					hints);
-			final CompositeContext srcOverSrcDst = AlphaComposite.SrcOver.createContext(srcColorModel, dstColorModel,
-					hints);
-
-			@Override
-			public void dispose() {
-				try {
-					srcOverSrcSrc.dispose();
-				} finally {
-					srcOverSrcDst.dispose();
-				}
-			}
-
-			@Override
-			public void compose(Raster src, Raster dstIn, WritableRaster dstOut) {
-				// Create the shade raster.
-				WritableRaster shadeRaster = src.createCompatibleWritableRaster();
-				Object shadeData = srcColorModel.getDataElements(shade.getRGB(), null);
-				for (int x = src.getMinX(); x < src.getMinX() + src.getWidth(); x++) {
-					for (int y = src.getMinY(); y < src.getMinY() + src.getHeight(); y++) {
-						shadeRaster.setDataElements(x, y, shadeData);
-					}
-				}
-
-				WritableRaster temp = src.createCompatibleWritableRaster();
-				srcOverSrcSrc.compose(shadeRaster, src, temp);
-				srcOverSrcDst.compose(temp, dstIn, dstOut);
-			}
-		};
-	}
-
 }
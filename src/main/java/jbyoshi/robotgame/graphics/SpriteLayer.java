@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame.graphics;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
+
+import jbyoshi.robotgame.api.Game;
+
+/**
+ * The layer that robots and spawners are drawn on. Its image is kept from one
+ * paint to the next, and only the grid spots where something changed are
+ * cleared and drawn again. It must only be used from one thread at a time.
+ */
+final class SpriteLayer {
+	// Sprites can be drawn up to one spot outside the world on each side.
+	private static final int CELLS = Game.WORLD_SIZE + 2;
+
+	private final GameComponent component;
+	private BufferedImage image;
+	private GameComponent.BufferLayer layer;
+	private double zoom;
+	private List<Sprite<?>> drawnSprites;
+	private float drawnTicks;
+
+	private final boolean[] dirty = new boolean[CELLS * CELLS];
+	private int[] dirtyCells = new int[64];
+	private int dirtyCount;
+
+	SpriteLayer(GameComponent component) {
+		this.component = component;
+	}
+
+	/**
+	 * Brings the layer up to date.
+	 *
+	 * @param sprites The sprites to show, in the order to draw them
+	 * @param spritesById The same sprites, by model ID
+	 * @param renderTicks How far through the frame to draw them
+	 * @return The layer
+	 */
+	GameComponent.BufferLayer update(List<Sprite<?>> sprites, Map<Integer, Sprite<?>> spritesById,
+									 float renderTicks) {
+		double zoom = component.getGridSpotSize();
+		if (image == null || zoom != this.zoom) {
+			this.zoom = zoom;
+			image = component.createLayerImage();
+			layer = component.tileLayer(image);
+			Graphics2D g = image.createGraphics();
+			g.translate(zoom, zoom);
+			g.scale(zoom, zoom);
+			sprites.forEach(sprite -> sprite.draw((Graphics2D) g.create(), renderTicks));
+			g.dispose();
+		} else if (sprites != drawnSprites || renderTicks != drawnTicks) {
+			// Clear wherever something was animated or is about to start moving.
+			boolean newFrame = sprites != drawnSprites;
+			for (Sprite<?> sprite : drawnSprites) {
+				Sprite<?> now = newFrame ? spritesById.get(sprite.model.getId()) : sprite;
+				if (sprite.isAnimated() || now == null || now.isAnimated()) {
+					markDirty(sprite, drawnTicks);
+				}
+				if (newFrame && now != null && sprite.isAnimated()) {
+					// Usually the same spots, except when it moved across the
+					// edge of the world: then it was last drawn in the margin
+					// on one side, and now rests on the other.
+					markDirty(now, renderTicks);
+				}
+			}
+			for (Sprite<?> sprite : sprites) {
+				if (sprite.isAnimated()) {
+					markDirty(sprite, renderTicks);
+				}
+			}
+			redrawDirty(sprites, renderTicks);
+		}
+		drawnSprites = sprites;
+		drawnTicks = renderTicks;
+		return layer;
+	}
+
+	/**
+	 * Gets the image the sprites are drawn on, or null if nothing has been
+	 * drawn yet.
+	 */
+	BufferedImage getImage() {
+		return image;
+	}
+
+	private void markDirty(Sprite<?> sprite, float renderTicks) {
+		double x = sprite.getDrawX(renderTicks), y = sprite.getDrawY(renderTicks);
+		for (int cellX = (int) Math.floor(x); cellX <= (int) Math.ceil(x); cellX++) {
+			for (int cellY = (int) Math.floor(y); cellY <= (int) Math.ceil(y); cellY++) {
+				int cell = cellIndex(cellX, cellY);
+				if (cell >= 0 && !dirty[cell]) {
+					dirty[cell] = true;
+					if (dirtyCount == dirtyCells.length) {
+						dirtyCells = Arrays.copyOf(dirtyCells, dirtyCount * 2);
+					}
+					dirtyCells[dirtyCount++] = cell;
+				}
+			}
+		}
+	}
+
+	private void redrawDirty(List<Sprite<?>> sprites, float renderTicks) {
+		if (dirtyCount == 0) {
+			return;
+		}
+		// Which sprites touch each spot, as indexes into the draw order.
+		Map<Integer, List<Integer>> spritesByCell = new HashMap<>();
+		for (int i = 0; i < sprites.size(); i++) {
+			Sprite<?> sprite = sprites.get(i);
+			double x = sprite.getDrawX(renderTicks), y = sprite.getDrawY(renderTicks);
+			for (int cellX = (int) Math.floor(x); cellX <= (int) Math.ceil(x); cellX++) {
+				for (int cellY = (int) Math.floor(y); cellY <= (int) Math.ceil(y); cellY++) {
+					int cell = cellIndex(cellX, cellY);
+					if (cell >= 0) {
+						spritesByCell.computeIfAbsent(cell, key -> new ArrayList<>(2)).add(i);
+					}
+				}
+			}
+		}
+
+		Graphics2D g = image.createGraphics();
+		SortedSet<Integer> toDraw = new TreeSet<>();
+		for (int i = 0; i < dirtyCount; i++) {
+			int cell = dirtyCells[i];
+			dirty[cell] = false;
+			int cellX = cell / CELLS - 1, cellY = cell % CELLS - 1;
+
+			// The spot's pixels, rounded outwards; anything near enough to
+			// reach into them is drawn again.
+			int left = (int) Math.floor((cellX + 1) * zoom), top = (int) Math.floor((cellY + 1) * zoom);
+			int right = (int) Math.ceil((cellX + 2) * zoom), bottom = (int) Math.ceil((cellY + 2) * zoom);
+			toDraw.clear();
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					List<Integer> near = spritesByCell.get(cellIndex(cellX + dx, cellY + dy));
+					if (near != null) {
+						toDraw.addAll(near);
+					}
+				}
+			}
+
+			Graphics2D cellGraphics = (Graphics2D) g.create();
+			cellGraphics.clipRect(left, top, right - left, bottom - top);
+			cellGraphics.setComposite(AlphaComposite.Clear);
+			cellGraphics.fillRect(left, top, right - left, bottom - top);
+			cellGraphics.setComposite(AlphaComposite.SrcOver);
+			cellGraphics.translate(zoom, zoom);
+			cellGraphics.scale(zoom, zoom);
+			for (int index : toDraw) {
+				sprites.get(index).draw((Graphics2D) cellGraphics.create(), renderTicks);
+			}
+			cellGraphics.dispose();
+		}
+		g.dispose();
+		dirtyCount = 0;
+	}
+
+	private static int cellIndex(int cellX, int cellY) {
+		if (cellX < -1 || cellX > Game.WORLD_SIZE || cellY < -1 || cellY > Game.WORLD_SIZE) {
+			return -1;
+		}
+		return (cellX + 1) * CELLS + cellY + 1;
+	}
+}
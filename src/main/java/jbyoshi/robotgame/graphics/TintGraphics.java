@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame.graphics;
+
+import java.awt.*;
+
+/**
+ * Blends every colour that is drawn with towards a shade. This does the same
+ * as painting the shade over each shape, but with plain colours, so it works
+ * with the standard composites and doesn't need any extra rasters.
+ */
+final class TintGraphics extends ProxyGraphics {
+    private final Color shade;
+    private final float amount;
+    private Color color;
+
+    TintGraphics(Graphics2D delegate, Color shade, float amount) {
+        this(delegate, shade, amount, delegate.getColor());
+    }
+
+    /**
+     * @param color The colour to draw with before it is tinted
+     */
+    private TintGraphics(Graphics2D delegate, Color shade, float amount, Color color) {
+        super(delegate);
+        this.shade = shade;
+        this.amount = amount;
+        setColor(color);
+    }
+
+    @Override
+    public Color getColor() {
+        return color;
+    }
+
+    @Override
+    public void setColor(Color c) {
+        color = c;
+        delegate.setColor(c == null ? null : tint(c));
+    }
+
+    @Override
+    public void setPaint(Paint paint) {
+        if (paint instanceof Color) {
+            setColor((Color) paint);
+        } else {
+            super.setPaint(paint);
+        }
+    }
+
+    private Color tint(Color c) {
+        return new Color(Math.round(c.getRed() + (shade.getRed() - c.getRed()) * amount),
+                Math.round(c.getGreen() + (shade.getGreen() - c.getGreen()) * amount),
+                Math.round(c.getBlue() + (shade.getBlue() - c.getBlue()) * amount), c.getAlpha());
+    }
+
+    @Override
+    protected ProxyGraphics createNew(Graphics2D newDelegate) {
+        // The new delegate already has the tinted colour, so start from the
+        // colour it was tinted from.
+        return new TintGraphics(newDelegate, shade, amount, color);
+    }
+}
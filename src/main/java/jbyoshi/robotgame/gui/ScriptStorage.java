@@ -33,7 +33,7 @@ public final class ScriptStorage implements Comparable<ScriptStorage> {
         this(Paths.get(line.substring(0, line.lastIndexOf(' '))), line.substring(line.lastIndexOf(' ') + 1));
     }
 
-    ScriptStorage(Path root, String mainClassName) throws IOException {
+    public ScriptStorage(Path root, String mainClassName) throws IOException {
         this.root = root;
         srcDir = root.resolve("src");
 
@@ -18,6 +18,7 @@ package jbyoshi.robotgame.impl;
 
 import java.util.*;
 import java.util.function.*;
+import java.util.stream.Collectors;
 
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
@@ -27,14 +28,20 @@ import jbyoshi.robotgame.model.*;
 import jbyoshi.robotgame.util.*;
 
 public final class GameView implements Game {
+	private static final int NOT_SEEN = -2, NOT_SEARCHED = -1;
+
 	private final GameModel model;
 	final PlayerImpl player;
 	private final Function<Model, ModelView<?>> views;
 	private final Set<BoundAction> actions = new LinkedHashSet<>();
+	private final Map<Set<Point>, FlowField> flowFields = new HashMap<>();
+	private final Random random;
 
 	public GameView(GameModel game, PlayerImpl player) {
 		this.model = game;
 		this.player = player;
+		// Seeded from the game so that a replayed game makes the same choices.
+		random = new Random(game.getSeed() ^ (31L * game.ticks + player.hashCode()));
 		views = CacheBuilder.newBuilder().weakValues().<Model, ModelView<?>>build(
 				CacheLoader.from(model -> ViewRegistry.wrap(model, this)))::getUnchecked;
 	}
@@ -61,71 +68,138 @@ public final class GameView implements Game {
 
 	@Override
 	public Set<? extends ObjectInGame> getObjectsNear(Located loc, int distance) {
-		Set<ModelView<?>> out = new HashSet<>();
-		getObjectsNear(loc, distance, new HashSet<>(), out);
+		Set<ModelView<?>> out = new LinkedHashSet<>();
+		forEachCellNear(loc.getLocation(), distance, index -> model.getModelsAt(index / WORLD_SIZE,
+				index % WORLD_SIZE).stream().map(views).forEach(out::add));
 		return out;
 	}
 
-	private static final int WORLD_SIZE_HALF = WORLD_SIZE / 2;
-
 	@Override
-	public Optional<Path> createPath(Located start, Located end, Predicate<Point> isWalkable) {
-		return new AStarPathFinder<Point>() {
-			@Override
-			protected Iterable<Point> getNeighbors(Point point) {
-				return Arrays.stream(Direction.values()).map(point::add).filter(isWalkable)::iterator;
+	public <L extends Located> Map<L, Set<? extends ObjectInGame>> getObjectsNearEach(Collection<L> locs,
+																					  int distance) {
+		// Every object is looked at once here, instead of once per location.
+		@SuppressWarnings({"rawtypes", "unchecked"})
+		List<ModelView<?>>[] byCell = new List[WORLD_SIZE * WORLD_SIZE];
+		for (Model object : model.getAllModels()) {
+			int index = GridPathFinder.index(object.getLocation());
+			if (byCell[index] == null) {
+				byCell[index] = new ArrayList<>(2);
 			}
+			byCell[index].add(views.apply(object));
+		}
 
-			@Override
-			protected int getResistance(Point from, Point to) {
-				return getObjectsAt(to).isEmpty() ? 1 : 1000;
-			}
+		Map<L, Set<? extends ObjectInGame>> out = new LinkedHashMap<>();
+		for (L loc : locs) {
+			Set<ModelView<?>> near = new LinkedHashSet<>();
+			forEachCellNear(loc.getLocation(), distance, index -> {
+				if (byCell[index] != null) {
+					near.addAll(byCell[index]);
+				}
+			});
+			out.put(loc, near);
+		}
+		return out;
+	}
 
-			@Override
-			protected int estimateDistanceToEnd(Point point, Point end) {
-				return Math.min(Math.min(estimateDistance(point, end),
-						estimateDistance(point.add(WORLD_SIZE_HALF, 0), end.add(WORLD_SIZE_HALF, 0))),
-						Math.min(estimateDistance(point.add(0, WORLD_SIZE_HALF), end.add(0, WORLD_SIZE_HALF)),
-								estimateDistance(point.add(WORLD_SIZE_HALF, WORLD_SIZE_HALF), end.add(50, 50))));
-			}
+	@Override
+	public Optional<Path> createPath(Located start, Located end) {
+		PathGrid grid = new PathGrid(null);
+		return GridPathFinder.use(finder -> finder.search(start.getLocation(), end.getLocation(), grid, random));
+	}
 
-			private int estimateDistance(Point a, Point b) {
-				return Math.abs(a.getX() - b.getX()) + Math.abs(a.getY() - b.getY());
-			}
-		}.search(start.getLocation(), end.getLocation()).map(points -> new Path(start.getLocation(), points));
+	@Override
+	public Optional<Path> createPath(Located start, Located end, Predicate<Point> isWalkable) {
+		PathGrid grid = new PathGrid(isWalkable);
+		return GridPathFinder.use(finder -> finder.search(start.getLocation(), end.getLocation(), grid, random));
+	}
+
+	@Override
+	public Optional<Path> createPath(Located start, Predicate<Point> end) {
+		return createPath(start, end, null);
 	}
 
 	@Override
 	public Optional<Path> createPath(Located start, Predicate<Point> end, Predicate<Point> isWalkable) {
-		return new DijkstraPathFinder<Point>() {
-			@Override
-			protected Iterable<Point> getNeighbors(Point point) {
-				return Arrays.stream(Direction.values()).map(point::add).filter(isWalkable)::iterator;
-			}
+		PathGrid grid = new PathGrid(isWalkable);
+		return GridPathFinder.use(finder -> finder.search(start.getLocation(),
+				index -> end.test(new Point(index / WORLD_SIZE, index % WORLD_SIZE)), grid, random));
+	}
 
-			@Override
-			protected int getResistance(Point from, Point to) {
-				return getObjectsAt(to).isEmpty() ? 1 : 1000;
-			}
-		}.search(start.getLocation(), end).map(points -> new Path(start.getLocation(), points));
+	@Override
+	public FlowField getFlowField(Collection<? extends Located> targets) {
+		Set<Point> points = targets.stream().map(Located::getLocation).collect(StreamHelpers.toImmutableSet());
+		// The game doesn't change during a tick, so the fields can be kept
+		// until this view is thrown away.
+		return flowFields.computeIfAbsent(points, key -> GridPathFinder.use(finder -> finder
+				.flowField(key.toArray(new Point[key.size()]), new PathGrid(null))));
+	}
+
+	/**
+	 * Gets the flow field to a single point, if one has already been made this
+	 * tick.
+	 *
+	 * @return The field, or null if there isn't one yet
+	 */
+	FlowField getExistingFlowField(Point target) {
+		return flowFields.get(Collections.singleton(target));
+	}
+
+	@Override
+	public <T extends ObjectInGame> Optional<T> findNearest(Located start, Class<T> type, Predicate<T> acceptTarget) {
+		return findNearest(start, type, acceptTarget, null);
 	}
 
 	@Override
 	public <T extends ObjectInGame> Optional<T> findNearest(Located start, Class<T> type, Predicate<T> acceptTarget,
 															Predicate<Point> isWalkable) {
 		Map<Point, T> objects = new HashMap<>();
+		BitSet targets = new BitSet(WORLD_SIZE * WORLD_SIZE);
 		model.getAllModels().stream().map(views).filter(type::isInstance).map(type::cast)
-				.filter(acceptTarget).forEach(view -> objects.put(view.getLocation(), view));
+				.filter(acceptTarget).forEach(view -> {
+					objects.put(view.getLocation(), view);
+					targets.set(GridPathFinder.index(view.getLocation()));
+				});
 
 		if (objects.isEmpty()) return Optional.empty();
 		if (objects.containsKey(start.getLocation())) return Optional.of(objects.get(start.getLocation()));
+		GridPathFinder.Grid grid = new PathGrid(isWalkable);
 		if (objects.size() == 1) {
 			// Optimize using astar.
-			return Optional.of(objects.values().iterator().next()).filter(x -> createPath(start, x.getLocation(),
-					isWalkable).isPresent());
+			return Optional.of(objects.values().iterator().next()).filter(x -> GridPathFinder.use(finder -> finder
+					.search(start.getLocation(), x.getLocation(), grid, random)).isPresent());
 		}
-		return createPath(start, objects::containsKey, isWalkable).map(path -> path.getPoint(path.getLength() - 1))
-				.map(objects::get);
+		return GridPathFinder.use(finder -> finder.search(start.getLocation(), targets::get, grid, random))
+				.map(path -> path.getPoint(path.getLength() - 1)).map(objects::get);
+	}
+
+	@Override
+	public <L extends Located, T extends ObjectInGame> Map<L, T> findNearestToEach(Collection<L> starts, Class<T> type,
+																				   Predicate<T> acceptTarget) {
+		return findNearestToEach(starts, type, acceptTarget, null);
+	}
+
+	@Override
+	public <L extends Located, T extends ObjectInGame> Map<L, T> findNearestToEach(Collection<L> starts, Class<T> type,
+																				   Predicate<T> acceptTarget,
+																				   Predicate<Point> isWalkable) {
+		Map<L, T> out = new LinkedHashMap<>();
+		List<T> targets = model.getAllModels().stream().map(views).filter(type::isInstance).map(type::cast)
+				.filter(acceptTarget).collect(Collectors.toList());
+		if (targets.isEmpty() || starts.isEmpty()) {
+			return out;
+		}
+
+		List<L> startList = new ArrayList<>(starts);
+		Point[] startPoints = startList.stream().map(Located::getLocation).toArray(Point[]::new);
+		Point[] targetPoints = targets.stream().map(Located::getLocation).toArray(Point[]::new);
+		PathGrid grid = new PathGrid(isWalkable);
+		int[] nearest = GridPathFinder.use(finder -> finder.nearest(startPoints, targetPoints, grid));
+		for (int i = 0; i < nearest.length; i++) {
+			if (nearest[i] >= 0) {
+				out.put(startList.get(i), targets.get(nearest[i]));
+			}
+		}
+		return out;
 	}
 
 	@Override
@@ -133,14 +207,78 @@ public final class GameView implements Game {
 		return model.map[point.getX()][point.getY()];
 	}
 
-	private void getObjectsNear(Located loc, int distance, Set<Point> checked, Set<ModelView<?>> out) {
-		if (checked.add(loc.getLocation())) {
-			model.getModelsAt(loc.getLocation()).stream().map(views).forEach(out::add);
+	/**
+	 * Calls the consumer with the {@linkplain GridPathFinder#index(int, int)
+	 * index} of every cell that can be reached in the given number of steps,
+	 * in the order that a depth-first search would first reach them. Scripts
+	 * may depend on that order, so it is kept; but a cell is only searched
+	 * from again if it is reached with more steps left than any finished
+	 * search from it had, since nothing new can be found otherwise.
+	 */
+	private static void forEachCellNear(Point center, int distance, IntConsumer action) {
+		new CellWalk(center, Math.max(distance, 0), action).walk(center.getX(), center.getY(), Math.max(distance, 0));
+	}
+
+	/**
+	 * The state of {@link #forEachCellNear(Point, int, IntConsumer)}. Only the
+	 * square around the center is tracked, so small searches in a big world
+	 * stay small.
+	 */
+	private static final class CellWalk {
+		private final IntConsumer action;
+		private final int window, offsetX, offsetY;
+		private final int[] searched;
+
+		CellWalk(Point center, int distance, IntConsumer action) {
+			this.action = action;
+			window = (int) Math.min(2L * distance + 1, WORLD_SIZE);
+			offsetX = window == WORLD_SIZE ? 0 : distance - center.getX();
+			offsetY = window == WORLD_SIZE ? 0 : distance - center.getY();
+			searched = new int[window * window];
+			Arrays.fill(searched, NOT_SEEN);
 		}
-		if (distance > 0) {
-			for (Direction dir : Direction.values()) {
-				getObjectsNear(loc.getLocation().add(dir), distance - 1, checked, out);
+
+		void walk(int x, int y, int distance) {
+			int cell = Math.floorMod(x + offsetX, WORLD_SIZE) * window + Math.floorMod(y + offsetY, WORLD_SIZE);
+			if (searched[cell] >= distance) {
+				return;
+			}
+			if (searched[cell] == NOT_SEEN) {
+				searched[cell] = NOT_SEARCHED;
+				action.accept(GridPathFinder.index(x, y));
+			}
+			if (distance > 0) {
+				for (Direction dir : Direction.values()) {
+					walk(Math.floorMod(x + dir.dx, WORLD_SIZE), Math.floorMod(y + dir.dy, WORLD_SIZE), distance - 1);
+				}
 			}
+			searched[cell] = Math.max(searched[cell], distance);
+		}
+	}
+
+	/**
+	 * Exposes the map to the path finder. Walls are checked directly when no
+	 * custom predicate is given, so the default searches never create points
+	 * for the cells they look at.
+	 */
+	private final class PathGrid implements GridPathFinder.Grid {
+		private final Predicate<Point> isWalkable;
+
+		PathGrid(Predicate<Point> isWalkable) {
+			this.isWalkable = isWalkable;
+		}
+
+		@Override
+		public boolean isWalkable(int x, int y) {
+			if (isWalkable == null) {
+				return !model.map[x][y];
+			}
+			return isWalkable.test(new Point(x, y));
+		}
+
+		@Override
+		public int getResistance(int x, int y) {
+			return model.isOccupied(x, y) ? 1000 : 1;
 		}
 	}
 
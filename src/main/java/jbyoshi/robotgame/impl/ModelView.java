@@ -32,7 +32,7 @@ abstract class ModelView<T extends Model> implements ObjectInGame {
 
     @Override
     public Point getLocation() {
-        return model.loc;
+        return model.getLocation();
     }
 
     final void addAction(Action<? super T> action) {
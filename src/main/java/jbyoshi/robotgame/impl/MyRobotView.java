@@ -46,7 +46,14 @@ final class MyRobotView extends RobotView implements MyRobot {
 	}
 
 	@Override
-	public boolean moveTo(Point loc) {
+	public boolean moveTo(Located dest) {
+		Point loc = dest.getLocation();
+		// Reuse a flow field if the script already made one, but don't make a
+		// whole-map one just for a single robot.
+		FlowField field = game.getExistingFlowField(loc);
+		if (field != null) {
+			return field.getDirection(this).filter(this::move).isPresent();
+		}
 		if (cachedPath != null && cachedPathTicks > 0 && cachedPath.getPoint(cachedPath.getLength() - 1).equals(loc)) {
 			cachedPathTicks--;
 			return move(cachedPath.getDirectionTo(++cachedPathProgress));
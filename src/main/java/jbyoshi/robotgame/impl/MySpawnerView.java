@@ -28,7 +28,7 @@ final class MySpawnerView extends SpawnerView implements MySpawner {
 	@Override
 	public void startSpawn() {
 		if (model.countdown == 0) {
-			addAction(new SpawnerStartSpawnAction(new RobotModel(model.player, model.loc)));
+			addAction(new SpawnerStartSpawnAction());
 		}
 	}
 
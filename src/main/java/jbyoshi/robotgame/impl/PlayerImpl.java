@@ -23,6 +23,7 @@ import java.awt.*;
 public class PlayerImpl implements Player {
     private final String name;
     private final Color c;
+    private final ScriptStats stats = new ScriptStats();
 
     public PlayerImpl(String name, Color c) {
         this.name = name;
@@ -38,6 +39,10 @@ public class PlayerImpl implements Player {
         return this.c;
     }
 
+    public ScriptStats getStats() {
+        return stats;
+    }
+
     @Override
     public String toString() {
         return name;
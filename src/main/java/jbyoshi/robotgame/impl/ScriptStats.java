@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame.impl;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How much CPU time a player's scripts have used, over every game the player
+ * has been in. Players can be in several games at once, so all of the counters
+ * are thread-safe.
+ */
+public final class ScriptStats {
+    private final LongAdder ticksRun = new LongAdder();
+    private final LongAdder cpuTime = new LongAdder();
+    private final LongAccumulator maxCpuTime = new LongAccumulator(Math::max, 0);
+    private final LongAdder overruns = new LongAdder();
+    private final LongAdder ticksSkipped = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder forfeits = new LongAdder();
+
+    public void recordTick(long cpuNanos, boolean overBudget) {
+        ticksRun.increment();
+        cpuTime.add(cpuNanos);
+        maxCpuTime.accumulate(cpuNanos);
+        if (overBudget) {
+            overruns.increment();
+        }
+    }
+
+    public void recordSkipped() {
+        ticksSkipped.increment();
+    }
+
+    public void recordTimeout() {
+        timeouts.increment();
+    }
+
+    public void recordForfeit() {
+        forfeits.increment();
+    }
+
+    public long getTicksRun() {
+        return ticksRun.sum();
+    }
+
+    /**
+     * @return The total CPU time used, in nanoseconds
+     */
+    public long getCpuTime() {
+        return cpuTime.sum();
+    }
+
+    /**
+     * @return The most CPU time used in a single tick, in nanoseconds
+     */
+    public long getMaxCpuTime() {
+        return maxCpuTime.get();
+    }
+
+    /**
+     * @return The number of ticks that went over the budget
+     */
+    public long getOverruns() {
+        return overruns.sum();
+    }
+
+    /**
+     * @return The number of ticks the script was not run in, either because of
+     *         the overrun policy or because it was still busy with an older tick
+     */
+    public long getTicksSkipped() {
+        return ticksSkipped.sum();
+    }
+
+    /**
+     * @return The number of ticks the server stopped waiting for the script
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return The number of games the script was removed from
+     */
+    public long getForfeits() {
+        return forfeits.sum();
+    }
+
+    @Override
+    public String toString() {
+        long ticks = getTicksRun();
+        return String.format("%d ticks, %.3f ms average, %.3f ms max, %d over budget, %d skipped, %d timed out, %d forfeited",
+                ticks, ticks == 0 ? 0 : getCpuTime() / 1e6 / ticks, getMaxCpuTime() / 1e6, getOverruns(),
+                getTicksSkipped(), getTimeouts(), getForfeits());
+    }
+}
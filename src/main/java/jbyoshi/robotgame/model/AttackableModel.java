@@ -29,6 +29,7 @@ public abstract class AttackableModel extends Model {
 
     public void attack(int damage) {
         health -= damage;
+        changed = true;
         if (health <= 0) {
             game.remove(this);
         }
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame.model;
+
+import java.util.*;
+
+import jbyoshi.robotgame.api.Point;
+import jbyoshi.robotgame.impl.PlayerImpl;
+
+/**
+ * The changes to a game over one tick. Applying a delta to a copy of the game
+ * brings it up to date without running the actions again.
+ */
+public final class GameDelta {
+	private final int ticks;
+	private final boolean ended;
+	private final PlayerImpl winner;
+	private final int idLimit;
+	private final int[] removed;
+	private final List<ModelState> changed;
+
+	public GameDelta(int ticks, boolean ended, PlayerImpl winner, int idLimit, int[] removed,
+					 List<ModelState> changed) {
+		this.ticks = ticks;
+		this.ended = ended;
+		this.winner = winner;
+		this.idLimit = idLimit;
+		this.removed = removed;
+		this.changed = changed;
+	}
+
+	/**
+	 * Finds the changes between two snapshots. Snapshots share the models that
+	 * have not changed, so this only has to compare references; it still works
+	 * for unrelated copies, but then every model counts as changed.
+	 *
+	 * @param previous The game before the tick
+	 * @param next The game after the tick
+	 * @return The changes
+	 */
+	public static GameDelta between(GameModel previous, GameModel next) {
+		int limit = Math.max(previous.getIdLimit(), next.getIdLimit());
+		int[] removed = new int[limit];
+		int numRemoved = 0;
+		List<ModelState> changed = new ArrayList<>();
+		for (int id = 0; id < limit; id++) {
+			Model before = previous.getModelById(id);
+			Model after = next.getModelById(id);
+			if (after == null) {
+				if (before != null) {
+					removed[numRemoved++] = id;
+				}
+			} else if (before != after) {
+				changed.add(new ModelState(after));
+			}
+		}
+		return new GameDelta(next.ticks, !next.isRunning(), next.getWinner(), next.getIdLimit(),
+				Arrays.copyOf(removed, numRemoved), changed);
+	}
+
+	/**
+	 * Describes a whole game as the changes from an empty game.
+	 *
+	 * @param game The game
+	 * @return The changes
+	 */
+	public static GameDelta of(GameModel game) {
+		List<ModelState> models = new ArrayList<>();
+		for (Model model : game.getAllModels()) {
+			models.add(new ModelState(model));
+		}
+		return new GameDelta(game.ticks, !game.isRunning(), game.getWinner(), game.getIdLimit(), new int[0], models);
+	}
+
+	/**
+	 * Applies these changes to a game.
+	 *
+	 * @param game The game, which must be in the state this delta was
+	 *             calculated from
+	 */
+	public void applyTo(GameModel game) {
+		game.reserveIds(idLimit);
+		for (int id : removed) {
+			Model model = game.getModelById(id);
+			if (model != null) {
+				game.remove(model);
+			}
+		}
+		for (ModelState state : changed) {
+			Model model = game.getModelById(state.id);
+			if (model == null) {
+				game.add(state.create());
+			} else {
+				state.update(model);
+			}
+		}
+		game.ticks = ticks;
+		game.setResult(ended, winner);
+	}
+
+	public int getTicks() {
+		return ticks;
+	}
+
+	public boolean isEnded() {
+		return ended;
+	}
+
+	public PlayerImpl getWinner() {
+		return winner;
+	}
+
+	public int getIdLimit() {
+		return idLimit;
+	}
+
+	public int[] getRemoved() {
+		return removed.clone();
+	}
+
+	public List<ModelState> getChanged() {
+		return Collections.unmodifiableList(changed);
+	}
+
+	/**
+	 * The full state of a single model that was spawned, moved or damaged.
+	 */
+	public static final class ModelState {
+		public final int id;
+		public final Class<? extends Model> type;
+		public final PlayerImpl player;
+		public final int x, y;
+		public final int health;
+		public final int countdown, totalCountdown;
+		/**
+		 * The ID of the robot being spawned, or -1 if nothing is spawning.
+		 */
+		public final int spawningId;
+
+		public ModelState(int id, Class<? extends Model> type, PlayerImpl player, int x, int y, int health,
+						  int countdown, int totalCountdown, int spawningId) {
+			if (type != RobotModel.class && type != SpawnerModel.class) {
+				throw new IllegalArgumentException("Unknown model " + type.getName());
+			}
+			this.id = id;
+			this.type = type;
+			this.player = player;
+			this.x = x;
+			this.y = y;
+			this.health = health;
+			this.countdown = countdown;
+			this.totalCountdown = totalCountdown;
+			this.spawningId = spawningId;
+		}
+
+		ModelState(Model model) {
+			id = model.getId();
+			type = model.getClass();
+			player = ((OwnedModel) model).getPlayer();
+			x = model.getLocation().getX();
+			y = model.getLocation().getY();
+			health = ((AttackableModel) model).health;
+			if (model instanceof SpawnerModel) {
+				SpawnerModel spawner = (SpawnerModel) model;
+				countdown = spawner.countdown;
+				totalCountdown = spawner.totalCountdown;
+				spawningId = spawner.spawningRobot == null ? -1 : spawner.spawningRobot.getId();
+			} else if (model instanceof RobotModel) {
+				countdown = totalCountdown = 0;
+				spawningId = -1;
+			} else {
+				throw new AssertionError("Unknown model " + model.getClass().getName());
+			}
+		}
+
+		Model create() {
+			Model model;
+			if (type == RobotModel.class) {
+				model = new RobotModel(player, new Point(x, y));
+			} else {
+				model = new SpawnerModel(player, new Point(x, y));
+			}
+			model.setId(id);
+			update(model);
+			return model;
+		}
+
+		void update(Model model) {
+			Point loc = new Point(x, y);
+			if (!loc.equals(model.getLocation())) {
+				model.setLocation(loc);
+			}
+			((AttackableModel) model).health = health;
+			if (model instanceof SpawnerModel) {
+				SpawnerModel spawner = (SpawnerModel) model;
+				spawner.countdown = countdown;
+				spawner.totalCountdown = totalCountdown;
+				if (spawningId < 0) {
+					spawner.spawningRobot = null;
+				} else if (spawner.spawningRobot == null || spawner.spawningRobot.getId() != spawningId) {
+					spawner.spawningRobot = new RobotModel(player, loc);
+					spawner.spawningRobot.setId(spawningId);
+				}
+			}
+			model.changed = true;
+		}
+	}
+}
@@ -17,38 +17,143 @@
 package jbyoshi.robotgame.model;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.MultimapBuilder;
 import jbyoshi.robotgame.action.*;
+import jbyoshi.robotgame.api.Game;
 import jbyoshi.robotgame.api.Point;
 import jbyoshi.robotgame.impl.PlayerImpl;
 import jbyoshi.robotgame.util.MapGen;
 
 public final class GameModel {
-	private final Multimap<Class<? extends Model>, Model> modelsByType = HashMultimap.create();
-	private final Map<UUID, Model> modelsById = new HashMap<>();
+	// Sorted by ID so the order doesn't depend on how the game got to its current state.
+	private final Multimap<Class<? extends Model>, Model> modelsByType = MultimapBuilder.hashKeys()
+			.treeSetValues(Comparator.comparingInt(Model::getId)).build();
+	private Model[] modelsById;
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private final List<Model>[] modelsByLocation = new List[Game.WORLD_SIZE * Game.WORLD_SIZE];
+	private final long seed;
+	private int nextId;
+	private final boolean readOnly;
+	private Model[] snapshotModels;
 	private boolean ended;
 	private PlayerImpl winner = null;
 	public final boolean[][] map;
 	public int ticks;
 	public static final int MAX_TICKS = 15 * 60;
+	/**
+	 * The number of players in a game, unless chosen otherwise. It can be set
+	 * with the {@code game.players} system property.
+	 */
+	public static final int DEFAULT_PLAYERS = Integer.getInteger("game.players", 4);
 
 	public GameModel() {
-		map = MapGen.createMap();
+		this(new Random().nextLong());
+	}
+
+	public GameModel(long seed) {
+		this(seed, DEFAULT_PLAYERS);
+	}
+
+	/**
+	 * Creates an empty game with a map that has room for the given number of
+	 * players. The players' spawners go at {@link MapGen#getSpawnPoints(int)}.
+	 */
+	public GameModel(long seed, int players) {
+		this.seed = seed;
+		readOnly = false;
+		modelsById = new Model[16];
+		map = MapGen.createMap(new Random(seed), players);
+	}
+
+	/**
+	 * Creates an empty game with a map that was already generated, such as one
+	 * received from a server.
+	 */
+	public GameModel(long seed, boolean[][] map) {
+		if (map.length != Game.WORLD_SIZE || map[0].length != Game.WORLD_SIZE) {
+			throw new IllegalArgumentException("The map is " + map.length + "x" + map[0].length + ", but the world is "
+					+ Game.WORLD_SIZE + "x" + Game.WORLD_SIZE + " (see the game.worldSize system property)");
+		}
+		this.seed = seed;
+		readOnly = false;
+		modelsById = new Model[16];
+		this.map = map;
 	}
 
 	public GameModel(GameModel other) {
+		seed = other.seed;
+		readOnly = false;
+		nextId = other.nextId;
+		modelsById = new Model[other.modelsById.length];
 		map = new boolean[other.map.length][other.map[0].length];
 		for (int x = 0; x < map.length; x++) {
 			System.arraycopy(other.map[x], 0, map[x], 0, map[0].length);
 		}
 
-		other.modelsById.values().stream().map(Model::clone).forEach(this::add);
+		for (int id = 0; id < other.nextId; id++) {
+			if (other.modelsById[id] != null) {
+				add(other.modelsById[id].clone());
+			}
+		}
+		ended = other.ended;
+		winner = other.winner;
+		ticks = other.ticks;
+	}
+
+	private GameModel(GameModel other, Model[] models) {
+		seed = other.seed;
+		readOnly = true;
+		nextId = other.nextId;
+		modelsById = new Model[other.modelsById.length];
+		// The map never changes during a game, so it can be shared.
+		map = other.map;
+		for (int id = 0; id < nextId; id++) {
+			if (models[id] != null) {
+				addModel(models[id]);
+			}
+		}
 		ended = other.ended;
 		winner = other.winner;
+		ticks = other.ticks;
+	}
+
+	/**
+	 * Creates a read-only snapshot of the current state of this game. Models
+	 * that have not changed since the previous snapshot are shared with it, so
+	 * only the models that changed during the tick are copied. Snapshots can be
+	 * read from any number of threads at once; {@link #ticks} identifies which
+	 * tick a snapshot was taken after.
+	 *
+	 * @return The snapshot
+	 */
+	public GameModel snapshot() {
+		if (snapshotModels == null || snapshotModels.length < nextId) {
+			snapshotModels = snapshotModels == null ? new Model[modelsById.length]
+					: Arrays.copyOf(snapshotModels, modelsById.length);
+		}
+		for (int id = 0; id < nextId; id++) {
+			Model model = modelsById[id];
+			if (model == null) {
+				snapshotModels[id] = null;
+			} else if (model.changed || snapshotModels[id] == null) {
+				snapshotModels[id] = model.clone();
+				model.changed = false;
+			}
+		}
+		return new GameModel(this, snapshotModels);
+	}
+
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	private void checkWritable() {
+		if (readOnly) {
+			throw new IllegalStateException("This game is a read-only snapshot");
+		}
 	}
 
 	public <T extends Model> Set<T> getModels(Class<T> type) {
@@ -56,42 +161,162 @@ public final class GameModel {
 	}
 
 	public void add(Model model) {
+		checkWritable();
+		if (model.getId() < 0) {
+			model.setId(nextId());
+		}
 		model.game = this;
+		addModel(model);
+	}
+
+	private void addModel(Model model) {
 		modelsByType.put(model.getClass(), model);
-		modelsById.put(model.getId(), model);
+		modelsById[model.getId()] = model;
+		addToLocation(model, model.getLocation());
 	}
 
 	public void remove(Model model) {
+		checkWritable();
 		modelsByType.remove(model.getClass(), model);
-		modelsById.remove(model.getId(), model);
+		if (getModelById(model.getId()) == model) {
+			modelsById[model.getId()] = null;
+			removeFromLocation(model, model.getLocation());
+		}
+	}
+
+	void moved(Model model, Point oldLoc) {
+		if (getModelById(model.getId()) == model) {
+			removeFromLocation(model, oldLoc);
+			addToLocation(model, model.getLocation());
+		}
+	}
+
+	private void addToLocation(Model model, Point loc) {
+		int index = locationIndex(loc);
+		List<Model> models = modelsByLocation[index];
+		if (models == null) {
+			models = modelsByLocation[index] = new ArrayList<>(2);
+		}
+		models.add(model);
 	}
 
-	public Model getModelById(UUID id) {
-		return this.modelsById.get(id);
+	private void removeFromLocation(Model model, Point loc) {
+		List<Model> models = modelsByLocation[locationIndex(loc)];
+		if (models != null) {
+			models.remove(model);
+		}
+	}
+
+	private static int locationIndex(Point loc) {
+		return loc.getX() * Game.WORLD_SIZE + loc.getY();
+	}
+
+	/**
+	 * Allocates an ID for a new model. IDs are handed out in order, so copies
+	 * of this game will allocate the same IDs as long as they perform the same
+	 * actions in the same order.
+	 */
+	int nextId() {
+		if (nextId == modelsById.length) {
+			modelsById = Arrays.copyOf(modelsById, nextId * 2);
+		}
+		return nextId++;
+	}
+
+	/**
+	 * Gets the number of IDs that have been handed out so far. Every model in
+	 * the game has an ID below this.
+	 */
+	int getIdLimit() {
+		return nextId;
+	}
+
+	/**
+	 * Makes sure that the given number of IDs have been handed out, for models
+	 * that were created by another copy of the game.
+	 */
+	void reserveIds(int limit) {
+		checkWritable();
+		if (limit > modelsById.length) {
+			modelsById = Arrays.copyOf(modelsById, Math.max(limit, modelsById.length * 2));
+		}
+		nextId = Math.max(nextId, limit);
+	}
+
+	void setResult(boolean ended, PlayerImpl winner) {
+		checkWritable();
+		this.ended = ended;
+		this.winner = winner;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public Model getModelById(int id) {
+		return id >= 0 && id < nextId ? modelsById[id] : null;
 	}
 
 	public void preTick() {
-		new LinkedList<>(modelsById.values()).forEach(Model::onTickStart);
+		checkWritable();
+		// Models added during the tick don't get ticked until the next one.
+		int end = nextId;
+		for (int id = 0; id < end; id++) {
+			if (modelsById[id] != null) {
+				modelsById[id].onTickStart();
+			}
+		}
 	}
 
 	@SuppressWarnings({ "unchecked", "rawtypes" })
-	public synchronized void postTick(List<BoundAction> actions) {
-		actions = new ArrayList<>(actions);
-		Collections.sort(actions, Comparator.comparing(action -> action.action.getPriority()));
+	public void postTick(List<BoundAction> actions) {
+		checkWritable();
+		// There are only a few different priorities, so instead of sorting,
+		// go through the actions once for each priority, lowest first. Like a
+		// stable sort, actions with the same priority keep their order.
+		int[] priorities = new int[2];
+		int numPriorities = 0;
 		for (BoundAction action : actions) {
-			final Model model = getModelById(action.targetId);
-			if (model != null) {
-				((Action) action.action).perform(model);
+			int priority = action.action.getPriority();
+			int pos = 0;
+			while (pos < numPriorities && priorities[pos] < priority) {
+				pos++;
+			}
+			if (pos < numPriorities && priorities[pos] == priority) {
+				continue;
+			}
+			if (numPriorities == priorities.length) {
+				priorities = Arrays.copyOf(priorities, numPriorities * 2);
+			}
+			System.arraycopy(priorities, pos, priorities, pos + 1, numPriorities - pos);
+			priorities[pos] = priority;
+			numPriorities++;
+		}
+		for (int i = 0; i < numPriorities; i++) {
+			for (BoundAction action : actions) {
+				if (action.action.getPriority() != priorities[i]) {
+					continue;
+				}
+				final Model model = getModelById(action.targetId);
+				if (model != null) {
+					((Action) action.action).perform(model);
+				}
+			}
+		}
+		int end = nextId;
+		for (int id = 0; id < end; id++) {
+			if (modelsById[id] != null) {
+				modelsById[id].onTickEnd();
 			}
 		}
-		new LinkedList<>(modelsById.values()).forEach(Model::onTickEnd);
 
 		ticks++;
 
 		boolean ended = true;
 		PlayerImpl player = null;
 		if (ticks < MAX_TICKS) {
-			for (Model model : modelsById.values()) {
+			for (int id = 0; id < nextId; id++) {
+				Model model = modelsById[id];
 				if (model instanceof OwnedModel) {
 					if (player == null) {
 						player = ((OwnedModel) model).getPlayer();
@@ -109,11 +334,31 @@ public final class GameModel {
 	}
 
 	public Set<Model> getModelsAt(Point loc) {
-		return modelsById.values().stream().filter(model -> model.loc.equals(loc)).collect(Collectors.toSet());
+		return getModelsAt(loc.getX(), loc.getY());
+	}
+
+	public Set<Model> getModelsAt(int x, int y) {
+		List<Model> models = modelsByLocation[x * Game.WORLD_SIZE + y];
+		return models == null ? ImmutableSet.of() : ImmutableSet.copyOf(models);
+	}
+
+	public boolean isOccupied(Point loc) {
+		return isOccupied(loc.getX(), loc.getY());
+	}
+
+	public boolean isOccupied(int x, int y) {
+		List<Model> models = modelsByLocation[x * Game.WORLD_SIZE + y];
+		return models != null && !models.isEmpty();
 	}
 
 	public Set<Model> getAllModels() {
-		return ImmutableSet.copyOf(modelsById.values());
+		ImmutableSet.Builder<Model> models = ImmutableSet.builder();
+		for (int id = 0; id < nextId; id++) {
+			if (modelsById[id] != null) {
+				models.add(modelsById[id]);
+			}
+		}
+		return models.build();
 	}
 
 	public boolean isRunning() {
@@ -18,12 +18,11 @@ package jbyoshi.robotgame.model;
 
 import jbyoshi.robotgame.api.Point;
 
-import java.util.*;
-
 public abstract class Model implements Cloneable {
-	private UUID id = UUID.randomUUID();
+	private int id = -1;
 	GameModel game;
-	public Point loc;
+	private Point loc;
+	boolean changed = true;
 
 	Model(Point loc) {
 		this.loc = loc;
@@ -33,22 +32,39 @@ public abstract class Model implements Cloneable {
 		return this.game;
 	}
 
-	void setId(UUID id) {
+	public Point getLocation() {
+		return loc;
+	}
+
+	void setLocation(Point loc) {
+		Point oldLoc = this.loc;
+		this.loc = loc;
+		changed = true;
+		if (game != null) {
+			game.moved(this, oldLoc);
+		}
+	}
+
+	void setId(int id) {
 		this.id = id;
 	}
 
-	public UUID getId() {
+	/**
+	 * Gets the ID of this model, which is unique within its game. Models that
+	 * have not been added to a game yet have an ID of -1.
+	 */
+	public int getId() {
 		return id;
 	}
 
 	@Override
 	public final int hashCode() {
-		return id.hashCode() ^ Model.class.hashCode();
+		return id;
 	}
 
 	@Override
 	public final boolean equals(Object other) {
-		return other != null && other.getClass().equals(getClass()) && ((Model) other).getId().equals(id);
+		return other != null && other.getClass().equals(getClass()) && ((Model) other).id == id;
 	}
 
 	@Override
@@ -29,9 +29,9 @@ public final class RobotModel extends AttackableModel implements OwnedModel {
 	}
 
 	public void move(Direction dir) {
-		Point newLoc = loc.add(dir);
-		if (game.getModelsAt(newLoc).isEmpty()) {
-			loc = newLoc;
+		Point newLoc = getLocation().add(dir);
+		if (!game.isOccupied(newLoc)) {
+			setLocation(newLoc);
 		}
 	}
 
@@ -20,8 +20,6 @@ import jbyoshi.robotgame.api.Point;
 import jbyoshi.robotgame.impl.PlayerImpl;
 import jbyoshi.robotgame.api.Direction;
 
-import java.util.*;
-
 public final class SpawnerModel extends AttackableModel implements OwnedModel {
 	public int countdown, totalCountdown;
 	public RobotModel spawningRobot;
@@ -32,25 +30,25 @@ public final class SpawnerModel extends AttackableModel implements OwnedModel {
 		this.player = player;
 	}
 
-	public void startSpawn(UUID id) {
+	public void startSpawn() {
 		if (spawningRobot != null) {
 			throw new IllegalStateException("Already spawning!");
 		}
 		countdown = totalCountdown = 5;
-		spawningRobot = new RobotModel(player, loc);
-		if (id != null) {
-			spawningRobot.setId(id);
-		}
+		changed = true;
+		spawningRobot = new RobotModel(player, getLocation());
+		spawningRobot.setId(game.nextId());
 	}
 
 	@Override
 	void onTickEnd() {
 		if (countdown > 0) {
 			countdown--;
+			changed = true;
 			if (countdown == 0 && spawningRobot != null) {
 				for (Direction dir : Direction.values()) {
-					if (game.getModelsAt(loc.add(dir)).isEmpty()) {
-						spawningRobot.loc = spawningRobot.loc.add(dir);
+					if (!game.isOccupied(getLocation().add(dir))) {
+						spawningRobot.setLocation(spawningRobot.getLocation().add(dir));
 						this.game.add(spawningRobot);
 						spawningRobot = null;
 						totalCountdown = 0;
@@ -63,6 +61,15 @@ public final class SpawnerModel extends AttackableModel implements OwnedModel {
 		}
 	}
 
+	@Override
+	public SpawnerModel clone() {
+		SpawnerModel m = (SpawnerModel) super.clone();
+		if (spawningRobot != null) {
+			m.spawningRobot = (RobotModel) spawningRobot.clone();
+		}
+		return m;
+	}
+
 	@Override
 	public PlayerImpl getPlayer() {
 		return player;
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame.script;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The amount of CPU time a script may use in each tick, and what happens when
+ * it uses more.
+ */
+public final class CpuBudget {
+    public static final CpuBudget UNLIMITED = new CpuBudget(Long.MAX_VALUE, TimeUnit.NANOSECONDS, OverrunPolicy.SKIP);
+
+    private final long nanosPerTick;
+    private final OverrunPolicy policy;
+
+    public CpuBudget(long timePerTick, TimeUnit unit, OverrunPolicy policy) {
+        if (timePerTick <= 0) {
+            throw new IllegalArgumentException("timePerTick must be positive");
+        }
+        this.nanosPerTick = unit.toNanos(timePerTick);
+        this.policy = policy;
+    }
+
+    /**
+     * Gets the budget set by the {@code script.cpuBudget} (in milliseconds)
+     * and {@code script.overrunPolicy} system properties.
+     *
+     * @return The budget, or {@link #UNLIMITED} if none is set
+     */
+    public static CpuBudget fromSystemProperties() {
+        String budget = System.getProperty("script.cpuBudget");
+        if (budget == null) {
+            return UNLIMITED;
+        }
+        String policy = System.getProperty("script.overrunPolicy", OverrunPolicy.SKIP.name());
+        return new CpuBudget(Long.parseLong(budget), TimeUnit.MILLISECONDS,
+                OverrunPolicy.valueOf(policy.toUpperCase(Locale.ROOT)));
+    }
+
+    public long getNanosPerTick() {
+        return nanosPerTick;
+    }
+
+    public OverrunPolicy getPolicy() {
+        return policy;
+    }
+
+    public enum OverrunPolicy {
+        /**
+         * The actions from a tick that went over the budget are thrown away.
+         */
+        SKIP,
+        /**
+         * The actions are kept, but the script sits out ticks until the extra
+         * time has been paid back out of their budgets.
+         */
+        THROTTLE,
+        /**
+         * The script is not run again for the rest of the game.
+         */
+        FORFEIT
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame.script;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jbyoshi.robotgame.action.BoundAction;
+import jbyoshi.robotgame.impl.PlayerImpl;
+import jbyoshi.robotgame.model.GameModel;
+import jbyoshi.robotgame.server.PlayerConnection;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs a player's script like {@link ScriptThread}, but as tasks on a shared
+ * executor instead of on a thread of its own, so a player that is waiting for
+ * the next tick doesn't hold on to a thread.
+ */
+public final class PooledScriptPlayer implements PlayerConnection {
+    private static final ExecutorService sharedExecutor = createSharedExecutor();
+
+    private final PlayerImpl player;
+    private final ScriptRunner runner;
+    private final Executor executor;
+    private volatile GameModel model;
+
+    // Guarded by this
+    private boolean running, ended;
+    private CompletableFuture<Set<BoundAction>> next;
+
+    public PooledScriptPlayer(PlayerImpl player, Script script) {
+        this(player, script, CpuBudget.fromSystemProperties(), sharedExecutor);
+    }
+
+    public PooledScriptPlayer(PlayerImpl player, Script script, CpuBudget budget, Executor executor) {
+        this.player = player;
+        this.runner = new ScriptRunner(player, script, budget);
+        this.executor = executor;
+    }
+
+    /**
+     * Gets the executor used by players that weren't given one. It uses
+     * virtual threads when the JVM has them (Java 21 and up), unless the
+     * {@code script.executor} system property is {@code pool}; otherwise it is
+     * a pool of daemon threads that grows with the number of ticks running at
+     * once.
+     *
+     * @return The executor
+     */
+    public static Executor getSharedExecutor() {
+        return sharedExecutor;
+    }
+
+    private static ExecutorService createSharedExecutor() {
+        if (!"pool".equals(System.getProperty("script.executor"))) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // Not available before Java 21.
+            }
+        }
+        return Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("Script pool thread %d")
+                .setDaemon(true).build());
+    }
+
+    @Override
+    public PlayerImpl getPlayerObject() {
+        return player;
+    }
+
+    @Override
+    public void gameStarted(GameModel model) {
+        if (this.model != null) {
+            throw new IllegalStateException("Already started!");
+        }
+        this.model = model;
+    }
+
+    @Override
+    public CompletableFuture<Set<BoundAction>> startTick() {
+        CompletableFuture<Set<BoundAction>> future = new CompletableFuture<>();
+        synchronized (this) {
+            if (ended) {
+                future.complete(new HashSet<>());
+                return future;
+            }
+            if (running) {
+                // Still busy with an older tick. Like in ScriptThread, only the
+                // newest waiting tick is kept.
+                if (next != null) {
+                    next.complete(new HashSet<>());
+                    player.getStats().recordSkipped();
+                }
+                next = future;
+                return future;
+            }
+            running = true;
+        }
+        executor.execute(() -> run(future));
+        return future;
+    }
+
+    private void run(CompletableFuture<Set<BoundAction>> future) {
+        while (future != null) {
+            try {
+                future.complete(runner.tick(model));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+            synchronized (this) {
+                future = next;
+                next = null;
+                if (future == null || ended) {
+                    running = false;
+                    if (future != null) {
+                        future.complete(new HashSet<>());
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void tickEnded(List<BoundAction> allActions, GameModel snapshot) {
+        model = snapshot;
+    }
+
+    @Override
+    public synchronized void gameEnded() {
+        ended = true;
+        if (next != null) {
+            next.complete(new HashSet<>());
+            next = null;
+        }
+    }
+}
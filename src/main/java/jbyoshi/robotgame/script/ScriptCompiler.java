@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame.script;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import javax.tools.*;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.BaseEncoding;
+import jbyoshi.robotgame.gui.ScriptStorage;
+import jbyoshi.robotgame.util.GameJar;
+
+/**
+ * Compiles Java scripts with the compiler built into the JDK, keeping the class
+ * files in memory. Compiled scripts are cached by the contents of their source
+ * files, so loading a script that has not changed does not compile it again.
+ */
+final class ScriptCompiler {
+	private static final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+	private static final Cache<String, Map<String, byte[]>> cache = CacheBuilder.newBuilder().maximumSize(16).build();
+
+	private ScriptCompiler() {
+	}
+
+	static boolean isAvailable() {
+		return compiler != null;
+	}
+
+	/**
+	 * Compiles a script, or gets it from the cache.
+	 *
+	 * @param scriptStorage The script
+	 * @return The class files, by binary class name
+	 */
+	static Map<String, byte[]> compile(ScriptStorage scriptStorage) throws IOException, CompilationException {
+		String hash = hash(scriptStorage);
+		try {
+			return cache.get(hash, () -> doCompile(scriptStorage));
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof CompilationException) {
+				throw (CompilationException) e.getCause();
+			}
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new AssertionError(e.getCause());
+		}
+	}
+
+	private static String hash(ScriptStorage scriptStorage) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new AssertionError(e);
+		}
+		digest.update(scriptStorage.getMainClassName().getBytes(StandardCharsets.UTF_8));
+		List<Path> files = new ArrayList<>(scriptStorage.getAuxiliaryFiles());
+		files.add(scriptStorage.getMainFile());
+		Collections.sort(files);
+		for (Path file : files) {
+			byte[] contents = Files.readAllBytes(file);
+			digest.update((byte) 0);
+			digest.update(scriptStorage.getSourceDir().relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(contents);
+		}
+		return BaseEncoding.base16().encode(digest.digest());
+	}
+
+	private static Map<String, byte[]> doCompile(ScriptStorage scriptStorage) throws IOException, CompilationException {
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		Map<String, byte[]> classes = new ConcurrentHashMap<>();
+		try (StandardJavaFileManager standard = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+				JavaFileManager fileManager = new MemoryFileManager(standard, classes)) {
+			List<String> options = Arrays.asList(
+					"-cp", GameJar.getGameLocation().getAbsolutePath(),
+					"-sourcepath", scriptStorage.getSourceDir().toAbsolutePath().toString(),
+					"-source", "1.8",
+					"-target", "1.8",
+					"-nowarn",
+					"-Xlint:-options");
+			Iterable<? extends JavaFileObject> sources = standard.getJavaFileObjects(scriptStorage.getMainFile().toFile());
+			if (compiler.getTask(null, fileManager, diagnostics, options, null, sources).call()) {
+				return classes;
+			}
+		}
+
+		StringBuilder sb = new StringBuilder("Compilation failed:\n");
+		for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+			if (diagnostic.getKind() != Diagnostic.Kind.ERROR) {
+				continue;
+			}
+			if (diagnostic.getSource() != null) {
+				sb.append(diagnostic.getSource().getName()).append(':').append(diagnostic.getLineNumber()).append(": ");
+			}
+			sb.append("error: ").append(diagnostic.getMessage(null)).append('\n');
+		}
+		throw new CompilationException(sb.toString());
+	}
+
+	/**
+	 * Sends class files to a map instead of the disk.
+	 */
+	private static final class MemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+		private final Map<String, byte[]> classes;
+
+		MemoryFileManager(JavaFileManager fileManager, Map<String, byte[]> classes) {
+			super(fileManager);
+			this.classes = classes;
+		}
+
+		@Override
+		public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+				FileObject sibling) throws IOException {
+			if (kind != JavaFileObject.Kind.CLASS) {
+				return super.getJavaFileForOutput(location, className, kind, sibling);
+			}
+			return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+				@Override
+				public OutputStream openOutputStream() {
+					return new ByteArrayOutputStream() {
+						@Override
+						public void close() {
+							classes.put(className, toByteArray());
+						}
+					};
+				}
+			};
+		}
+	}
+
+	/**
+	 * Loads classes from the class files made by {@link #compile(ScriptStorage)}.
+	 * A new loader is used every time a script is loaded, so static fields in
+	 * the script start fresh even when the compiled classes came from the cache.
+	 */
+	static final class MemoryClassLoader extends ClassLoader {
+		private final Map<String, byte[]> classes;
+
+		MemoryClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+			super(parent);
+			this.classes = classes;
+		}
+
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			byte[] bytes = classes.get(name);
+			if (bytes == null) {
+				throw new ClassNotFoundException(name);
+			}
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
@@ -18,11 +18,13 @@ package jbyoshi.robotgame.script;
 
 import java.io.*;
 import java.lang.reflect.*;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import bsh.*;
 import jbyoshi.robotgame.api.Game;
@@ -46,56 +48,99 @@ public final class ScriptLoader {
 	}
 
 	public static boolean isJavacEnabled() {
-		return javac != null && javac.exists();
+		return ScriptCompiler.isAvailable() || (javac != null && javac.exists());
 	}
 
 	public static Script loadScript(ScriptStorage scriptStorage) throws InvocationTargetException, CompilationException,
 			IOException {
+		if (ScriptCompiler.isAvailable()) {
+			return loadClasses(scriptStorage, ScriptCompiler.compile(scriptStorage));
+		}
 		if (isJavacEnabled()) {
-			return loadJavacScript(scriptStorage, javac);
+			return loadClasses(scriptStorage, compileWithJavac(scriptStorage, javac));
 		}
 		return loadBshScript(scriptStorage);
 	}
 
-	private static Script loadJavacScript(ScriptStorage scriptStorage, File javac) throws IOException,
-			CompilationException, InvocationTargetException {
+	private static Script loadClasses(ScriptStorage scriptStorage, Map<String, byte[]> classes)
+			throws IOException, InvocationTargetException {
+		ClassLoader loader = new ScriptCompiler.MemoryClassLoader(classes, ScriptLoader.class.getClassLoader());
+		try {
+			return loadScript(loader.loadClass(scriptStorage.getMainClassName()));
+		} catch (ClassNotFoundException e) {
+			NoSuchFileException nsfe = new NoSuchFileException(e.toString());
+			nsfe.initCause(e);
+			throw nsfe;
+		}
+	}
+
+	/**
+	 * Compiles a script with an external javac, for when the JDK compiler
+	 * can't be used in-process. The class files are read into memory so the
+	 * output directory can be deleted straight away.
+	 */
+	private static Map<String, byte[]> compileWithJavac(ScriptStorage scriptStorage, File javac) throws IOException,
+			CompilationException {
 		Path outDir = Files.createTempDirectory("RobotGame-script-out-"
 				+ scriptStorage.getRootDir().getFileName().toString());
-		Process p = new ProcessBuilder().command(javac.getAbsolutePath(),
-				"-cp", GameJar.getGameLocation().getAbsolutePath(),
-				"-d", outDir.toAbsolutePath().toString(),
-				"-sourcepath", scriptStorage.getSourceDir().toAbsolutePath().toString(),
-				"-source", "1.8",
-				"-target", "1.8",
-				scriptStorage.getMainFile().toAbsolutePath().toString()).start();
-		int result;
 		try {
-			result = p.waitFor();
-		} catch (InterruptedException e) {
-			final InterruptedIOException ioe = new InterruptedIOException(e.toString());
-			ioe.initCause(e);
-			throw ioe;
-		}
-		if (result == 0) {
-			URLClassLoader loader = new URLClassLoader(new URL[] {outDir.toUri().toURL()},
-					ScriptLoader.class.getClassLoader());
+			Process p = new ProcessBuilder().command(javac.getAbsolutePath(),
+					"-cp", GameJar.getGameLocation().getAbsolutePath(),
+					"-d", outDir.toAbsolutePath().toString(),
+					"-sourcepath", scriptStorage.getSourceDir().toAbsolutePath().toString(),
+					"-source", "1.8",
+					"-target", "1.8",
+					scriptStorage.getMainFile().toAbsolutePath().toString()).redirectErrorStream(true).start();
+			// Read the output while javac runs, so a full pipe can't block it.
+			StringBuilder sb = new StringBuilder("Compilation failed:\n");
+			InputStreamReader in = new InputStreamReader(p.getInputStream());
+			char[] cbuf = new char[1024];
+			int read;
+			while ((read = in.read(cbuf)) > 0) {
+				sb.append(cbuf, 0, read);
+			}
+			int result;
 			try {
-				return loadScript(loader.loadClass(scriptStorage.getMainClassName()));
-			} catch (ClassNotFoundException e) {
-				NoSuchFileException nsfe = new NoSuchFileException(e.toString());
-				nsfe.initCause(e);
-				throw nsfe;
+				result = p.waitFor();
+			} catch (InterruptedException e) {
+				final InterruptedIOException ioe = new InterruptedIOException(e.toString());
+				ioe.initCause(e);
+				throw ioe;
+			}
+			if (result != 0) {
+				throw new CompilationException(sb.toString());
 			}
-		}
 
-		StringBuilder sb = new StringBuilder("Compilation failed:\n");
-		InputStreamReader in = new InputStreamReader(p.getErrorStream());
-		char[] cbuf = new char[1024];
-		int read;
-		while ((read = in.read(cbuf)) > 0) {
-			sb.append(cbuf, 0, read);
+			Map<String, byte[]> classes = new HashMap<>();
+			try (Stream<Path> files = Files.walk(outDir)) {
+				for (Path file : (Iterable<Path>) files::iterator) {
+					String name = outDir.relativize(file).toString();
+					if (name.endsWith(".class")) {
+						name = name.substring(0, name.length() - ".class".length()).replace(File.separatorChar, '.');
+						classes.put(name, Files.readAllBytes(file));
+					}
+				}
+			}
+			return classes;
+		} finally {
+			deleteRecursively(outDir);
 		}
-		throw new CompilationException(sb.toString());
+	}
+
+	private static void deleteRecursively(Path dir) throws IOException {
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
 	}
 
 	private static Script loadBshScript(ScriptStorage scriptStorage) throws IOException, InvocationTargetException,
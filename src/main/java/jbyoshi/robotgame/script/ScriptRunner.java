@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame.script;
+
+import jbyoshi.robotgame.action.BoundAction;
+import jbyoshi.robotgame.impl.GameView;
+import jbyoshi.robotgame.impl.PlayerImpl;
+import jbyoshi.robotgame.model.GameModel;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Runs one player's script for a tick, keeping track of its CPU time. Ticks
+ * for the same player must not run at the same time, but they don't have to
+ * run on the same thread.
+ */
+final class ScriptRunner {
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final boolean cpuTimeSupported = threads.isCurrentThreadCpuTimeSupported();
+
+    static {
+        if (cpuTimeSupported && !threads.isThreadCpuTimeEnabled()) {
+            threads.setThreadCpuTimeEnabled(true);
+        }
+    }
+
+    private final PlayerImpl player;
+    private final Script script;
+    private final CpuBudget budget;
+    private long debt;
+    private boolean forfeited;
+
+    ScriptRunner(PlayerImpl player, Script script, CpuBudget budget) {
+        this.player = player;
+        this.script = script;
+        this.budget = budget;
+    }
+
+    Set<BoundAction> tick(GameModel model) {
+        if (forfeited) {
+            player.getStats().recordSkipped();
+            return new HashSet<>();
+        }
+        if (debt > 0) {
+            debt -= budget.getNanosPerTick();
+            player.getStats().recordSkipped();
+            return new HashSet<>();
+        }
+
+        long start = cpuTime();
+        Set<BoundAction> actions;
+        try {
+            GameView view = new GameView(model, player);
+            script.tick(view);
+            actions = view.popActions();
+        } catch (Throwable e) {
+            System.err.print("Error in script for " + player.getName() + ": ");
+            e.printStackTrace();
+            actions = new HashSet<>();
+        }
+        long used = cpuTime() - start;
+        boolean overBudget = used > budget.getNanosPerTick();
+        player.getStats().recordTick(used, overBudget);
+        if (overBudget) {
+            switch (budget.getPolicy()) {
+                case SKIP:
+                    return new HashSet<>();
+                case THROTTLE:
+                    debt = used - budget.getNanosPerTick();
+                    break;
+                case FORFEIT:
+                    System.err.println("Script for " + player.getName() + " used too much time and was stopped");
+                    forfeited = true;
+                    player.getStats().recordForfeit();
+                    return new HashSet<>();
+            }
+        }
+        return actions;
+    }
+
+    private static long cpuTime() {
+        if (cpuTimeSupported) {
+            try {
+                long time = threads.getCurrentThreadCpuTime();
+                if (time >= 0) {
+                    return time;
+                }
+            } catch (UnsupportedOperationException e) {
+                // Virtual threads can't be measured.
+            }
+        }
+        // Fall back to wall time where the JVM can't measure CPU time.
+        return System.nanoTime();
+    }
+}
@@ -17,7 +17,6 @@
 package jbyoshi.robotgame.script;
 
 import jbyoshi.robotgame.action.BoundAction;
-import jbyoshi.robotgame.impl.GameView;
 import jbyoshi.robotgame.impl.PlayerImpl;
 import jbyoshi.robotgame.model.GameModel;
 import jbyoshi.robotgame.server.PlayerConnection;
@@ -29,15 +28,19 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedBlockingQueue;
 
 public class ScriptThread extends Thread implements PlayerConnection {
-    private GameModel model;
+    private volatile GameModel model;
     private final PlayerImpl player;
-    private final Script script;
+    private final ScriptRunner runner;
     private final LinkedBlockingQueue<CompletableFuture<Set<BoundAction>>> queue = new LinkedBlockingQueue<>();
 
     public ScriptThread(PlayerImpl player, Script script) {
+        this(player, script, CpuBudget.fromSystemProperties());
+    }
+
+    public ScriptThread(PlayerImpl player, Script script, CpuBudget budget) {
         setName("Script thread - " + player);
         this.player = player;
-        this.script = script;
+        this.runner = new ScriptRunner(player, script, budget);
     }
 
     @Override
@@ -56,7 +59,7 @@ public class ScriptThread extends Thread implements PlayerConnection {
             CompletableFuture<Set<BoundAction>> onEnded = null;
             try {
                 onEnded = queue.take();
-                final Set<BoundAction> actions = tick();
+                final Set<BoundAction> actions = runner.tick(model);
                 onEnded.complete(actions);
             } catch (InterruptedException e) {
                 return;
@@ -68,26 +71,17 @@ public class ScriptThread extends Thread implements PlayerConnection {
         }
     }
 
-    private Set<BoundAction> tick() {
-        model.preTick();
-        try {
-            GameView view = new GameView(model, player);
-            script.tick(view);
-            return view.popActions();
-        } catch (Throwable e) {
-            System.err.print("Error in script for " + player.getName() + ": ");
-            e.printStackTrace();
-            return new HashSet<>();
-        }
-    }
-
     public CompletableFuture<Set<BoundAction>> startTick() {
         CompletableFuture<Set<BoundAction>> future = new CompletableFuture<>();
         synchronized (queue) {
             // Remove any older, still-pending futures.
             // If a take() call comes here, it gets the old one, and poll() here just returns null.
             while (queue.size() > 1) {
-                queue.poll();
+                CompletableFuture<Set<BoundAction>> stale = queue.poll();
+                if (stale != null) {
+                    stale.complete(new HashSet<>());
+                    player.getStats().recordSkipped();
+                }
             }
             // And add the new one.
             // If a take() call comes here, it will wait until the add() has finished.
@@ -97,8 +91,8 @@ public class ScriptThread extends Thread implements PlayerConnection {
     }
 
     @Override
-    public void tickEnded(List<BoundAction> allActions) {
-        model.postTick(allActions);
+    public void tickEnded(List<BoundAction> allActions, GameModel snapshot) {
+        model = snapshot;
     }
 
     @Override
@@ -28,8 +28,7 @@ final class SecuredBshClassManager extends ClassManagerImpl {
 	@Override
 	public void cacheResolvedMethod(Class clazz, Class[] parameters, Method method) {
 		SecuredNameSpace.filterPackageOrClass(clazz.getName());
-		SecuredNameSpace.filterPackageOrClass(method.getDeclaringClass().getName());
-		// TODO filter method
+		SecuredNameSpace.filterMethod(method);
 		super.cacheResolvedMethod(clazz, parameters, method);
 	}
 }
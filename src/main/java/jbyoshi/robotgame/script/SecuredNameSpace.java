@@ -19,16 +19,32 @@ package jbyoshi.robotgame.script;
 import bsh.*;
 import jbyoshi.robotgame.api.*;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.HashSet;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 final class SecuredNameSpace extends NameSpace {
 	private static final long serialVersionUID = -1152079216306105189L;
 
+	/**
+	 * Names that have already been looked up and allowed, along with the class
+	 * they refer to, or an empty optional if they are not a class.
+	 */
+	private transient Map<String, Optional<Class<?>>> checkedClasses = new ConcurrentHashMap<>();
+
 	SecuredNameSpace(SecuredBshClassManager classManager, String name) {
 		super(classManager, name);
 	}
 
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		// The cache isn't saved; the names are checked again as they are used.
+		checkedClasses = new ConcurrentHashMap<>();
+	}
+
 	@Override
 	public void doSuperImport() {
 		throw new SecurityException("Super imports are not allowed!");
@@ -36,6 +52,12 @@ final class SecuredNameSpace extends NameSpace {
 
 	@Override
 	public Class<?> getClass(String name) throws UtilEvalError {
+		// Every method call gets a new child namespace, so without this, each
+		// tick would look up and check every class it names all over again.
+		Optional<Class<?>> cached = checkedClasses.get(name);
+		if (cached != null) {
+			return cached.orElse(null);
+		}
 		Class<?> clazz = super.getClass(name);
 		if (clazz != null) {
 			filterPackageOrClass(clazz.getName());
@@ -43,9 +65,20 @@ final class SecuredNameSpace extends NameSpace {
 				throw new SecurityException(SecurityException.class.getName() + ": Cannot access " + name);
 			}
 		}
+		checkedClasses.put(name, Optional.ofNullable(clazz));
 		return clazz;
 	}
 
+	@Override
+	public void nameSpaceChanged() {
+		// Called for new imports and class definitions, which can change what a name means.
+		super.nameSpaceChanged();
+		// Null while NameSpace's constructor is running.
+		if (checkedClasses != null) {
+			checkedClasses.clear();
+		}
+	}
+
 	@Override
 	public Object getCommand(String name, Class[] argTypes, Interpreter interpreter) {
 		return null;
@@ -146,20 +179,72 @@ final class SecuredNameSpace extends NameSpace {
 		// TODO more filtering
 	}
 
+	/**
+	 * Whether each package or class name that has been checked is
+	 * restricted, so each name only has to be checked once.
+	 */
+	private static final Map<String, Boolean> restrictedVerdicts = new ConcurrentHashMap<>();
+
 	static void filterPackageOrClass(String name) {
-		if (name.equals("")) {
-			return;
+		if (restrictedVerdicts.computeIfAbsent(name, SecuredNameSpace::isRestricted)) {
+			throw new SecurityException(SecurityException.class.getName() + ": Cannot access " + name);
 		}
-		if (name.equals(Game.class.getPackage().getName())) {
-			return;
+	}
+
+	private static boolean isRestricted(String name) {
+		while (!name.equals("") && !name.equals(Game.class.getPackage().getName())) {
+			if (restrictedPackagesAndClasses.contains(name)) {
+				return true;
+			}
+			int dot = name.lastIndexOf('.');
+			if (dot < 0) {
+				break;
+			}
+			name = name.substring(0, dot);
 		}
-		if (restrictedPackagesAndClasses.contains(name)) {
-			throw new SecurityException(SecurityException.class.getName() + ": Cannot access " + name);
+		return false;
+	}
+
+	private static final Map<String, Set<String>> restrictedMethods = new HashMap<>();
+
+	static {
+		restrictMethods(System.class, "clearProperty", "console", "exit", "gc", "inheritedChannel", "load",
+				"loadLibrary", "runFinalization", "setErr", "setIn", "setOut", "setProperties", "setProperty",
+				"setSecurityManager");
+		restrictMethods(Runtime.class, "addShutdownHook", "exec", "exit", "gc", "halt", "load", "loadLibrary",
+				"removeShutdownHook", "runFinalization", "traceInstructions", "traceMethodCalls");
+		restrictMethods(Thread.class, "destroy", "resume", "setContextClassLoader",
+				"setDefaultUncaughtExceptionHandler", "getContextClassLoader", "setDaemon", "setPriority",
+				"setUncaughtExceptionHandler", "stop", "suspend");
+		restrictMethods(Class.class, "forName", "getClassLoader", "getConstructor", "getConstructors",
+				"getDeclaredConstructor", "getDeclaredConstructors", "getDeclaredField", "getDeclaredFields",
+				"getDeclaredMethod", "getDeclaredMethods", "getField", "getFields", "getMethod", "getMethods",
+				"getProtectionDomain", "newInstance");
+		restrictMethods(ClassLoader.class, "getParent", "getSystemClassLoader", "loadClass");
+	}
+
+	private static void restrictMethods(Class<?> clazz, String... names) {
+		restrictedMethods.put(clazz.getName(), new HashSet<>(Arrays.asList(names)));
+	}
+
+	/**
+	 * Whether each method that has been checked is restricted.
+	 */
+	private static final Map<Method, Boolean> methodVerdicts = new ConcurrentHashMap<>();
+
+	static void filterMethod(Method method) {
+		if (methodVerdicts.computeIfAbsent(method, SecuredNameSpace::isRestricted)) {
+			throw new SecurityException(SecurityException.class.getName() + ": Cannot access "
+					+ method.getDeclaringClass().getName() + "." + method.getName());
 		}
-		int dot = name.lastIndexOf('.');
-		if (dot >= 0) {
-			filterPackageOrClass(name.substring(0, dot));
+	}
+
+	private static boolean isRestricted(Method method) {
+		if (isRestricted(method.getDeclaringClass().getName())) {
+			return true;
 		}
+		Set<String> methods = restrictedMethods.get(method.getDeclaringClass().getName());
+		return methods != null && methods.contains(method.getName());
 	}
 
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame.server;
+
+import jbyoshi.robotgame.model.GameDelta;
+import jbyoshi.robotgame.model.GameModel;
+
+/**
+ * A player connection that keeps its own copy of the game up to date by
+ * applying the changes from each tick. When a connection implements this, the
+ * server calls {@link #tickEnded(GameDelta, GameModel)} instead of
+ * {@link #tickEnded(java.util.List, jbyoshi.robotgame.model.GameModel)}.
+ */
+public interface DeltaPlayerConnection extends PlayerConnection {
+    /**
+     * Called when a tick has ended.
+     *
+     * @param delta The changes to the game during the tick
+     * @param snapshot A read-only snapshot of the game after the tick, the
+     *                 same as applying the delta
+     */
+    void tickEnded(GameDelta delta, GameModel snapshot);
+}
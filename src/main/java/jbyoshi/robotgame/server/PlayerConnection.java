@@ -27,11 +27,24 @@ import java.util.concurrent.CompletableFuture;
 public interface PlayerConnection {
     PlayerImpl getPlayerObject();
 
+    /**
+     * Called when the game starts.
+     *
+     * @param model A read-only snapshot of the game. The same snapshot is given
+     *              to every player.
+     */
     void gameStarted(GameModel model);
 
     CompletableFuture<Set<BoundAction>> startTick();
 
-    void tickEnded(List<BoundAction> allActions);
+    /**
+     * Called when a tick has ended.
+     *
+     * @param allActions The actions that every player performed in the tick
+     * @param snapshot A read-only snapshot of the game after the tick. The same
+     *                 snapshot is given to every player.
+     */
+    void tickEnded(List<BoundAction> allActions, GameModel snapshot);
 
     void gameEnded();
 }
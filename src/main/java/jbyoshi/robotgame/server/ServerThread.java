@@ -16,36 +16,63 @@
  */
 package jbyoshi.robotgame.server;
 
-import com.google.common.collect.ImmutableList;
 import jbyoshi.robotgame.action.BoundAction;
-import jbyoshi.robotgame.api.Game;
 import jbyoshi.robotgame.api.Point;
+import jbyoshi.robotgame.impl.PlayerImpl;
+import jbyoshi.robotgame.model.GameDelta;
 import jbyoshi.robotgame.model.GameModel;
 import jbyoshi.robotgame.model.SpawnerModel;
+import jbyoshi.robotgame.util.MapGen;
 
-import java.util.List;
-import java.util.Vector;
+import java.util.*;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public final class ServerThread implements Runnable {
     private final List<? extends PlayerConnection> scripts;
     private final GameModel game;
+    private final long tickLength;
+    private final long tickTimeout;
 
     public ServerThread(List<? extends PlayerConnection> scripts) {
+        this(scripts, 1000, new Random().nextLong());
+    }
+
+    public ServerThread(List<? extends PlayerConnection> scripts, long tickLength, long seed) {
+        this(scripts, tickLength, Long.getLong("server.tickTimeout", 2000), seed);
+    }
+
+    /**
+     * Creates a server thread.
+     *
+     * @param scripts The players in the game
+     * @param tickLength The minimum length of a tick, in milliseconds. If this
+     *                   is 0, each tick starts as soon as all of the players
+     *                   have finished the previous one.
+     * @param tickTimeout How long to wait for the players in each tick, in
+     *                    milliseconds. Players that take longer perform no
+     *                    actions that tick.
+     * @param seed The seed for the game. Two games with the same seed, players
+     *             and scripts will play out the same way.
+     */
+    public ServerThread(List<? extends PlayerConnection> scripts, long tickLength, long tickTimeout, long seed) {
         this.scripts = scripts;
-        
-        this.game = new GameModel();
-        game.add(new SpawnerModel(scripts.get(0).getPlayerObject(), new Point(Game.WORLD_SIZE / 4, Game.WORLD_SIZE / 4)));
-        game.add(new SpawnerModel(scripts.get(1).getPlayerObject(), new Point(Game.WORLD_SIZE * 3 / 4, Game.WORLD_SIZE / 4)));
-        game.add(new SpawnerModel(scripts.get(2).getPlayerObject(), new Point(Game.WORLD_SIZE / 4, Game.WORLD_SIZE * 3 / 4)));
-        game.add(new SpawnerModel(scripts.get(3).getPlayerObject(), new Point(Game.WORLD_SIZE * 3 / 4, Game.WORLD_SIZE * 3 / 4)));
+        this.tickLength = tickLength;
+        this.tickTimeout = tickTimeout;
+
+        this.game = new GameModel(seed, scripts.size());
+        List<Point> spawnPoints = MapGen.getSpawnPoints(scripts.size());
+        for (int i = 0; i < scripts.size(); i++) {
+            game.add(new SpawnerModel(scripts.get(i).getPlayerObject(), spawnPoints.get(i)));
+        }
     }
 
     @Override
     public void run() {
+        GameModel snapshot = game.snapshot();
         for (PlayerConnection conn : this.scripts) {
-            conn.gameStarted(new GameModel(game));
+            conn.gameStarted(snapshot);
         }
         while (game.isRunning()) {
             if (Thread.currentThread().isInterrupted()) {
@@ -55,20 +82,15 @@ public final class ServerThread implements Runnable {
 
             long start = System.currentTimeMillis();
             game.preTick();
-            scripts.forEach(PlayerConnection::startTick);
-            final List<BoundAction> actions = new Vector<>();
-            final List<PlayerConnection> pendingScripts = new Vector<>(scripts);
+            // One slot per player; each completion only writes its own slot, so no locking is needed.
+            final AtomicReferenceArray<Set<BoundAction>> results = new AtomicReferenceArray<>(scripts.size());
             CountDownLatch latch = new CountDownLatch(scripts.size());
-            for (PlayerConnection conn : scripts) {
+            for (int i = 0; i < scripts.size(); i++) {
+                final int index = i;
                 try {
-                    conn.startTick().whenComplete((result, exception) -> {
-                        synchronized (actions) {
-                            pendingScripts.remove(conn);
-                            if (result != null) {
-                                actions.addAll(result);
-                            }
-                            latch.countDown();
-                        }
+                    scripts.get(i).startTick().whenComplete((result, exception) -> {
+                        results.set(index, result == null ? Collections.emptySet() : result);
+                        latch.countDown();
                     });
                 } catch (Exception e) {
                     e.printStackTrace();
@@ -76,25 +98,51 @@ public final class ServerThread implements Runnable {
                 }
             }
             try {
-                latch.await(2, TimeUnit.SECONDS);
+                latch.await(tickTimeout, TimeUnit.MILLISECONDS);
             } catch (InterruptedException e) {
                 handleInterrupted();
                 return;
             }
-            List<BoundAction> safeActions;
-            synchronized (actions) {
-                safeActions = ImmutableList.copyOf(actions);
-                for (PlayerConnection conn : pendingScripts) {
-                    System.out.println("WARN: Script for " + conn.getPlayerObject().getName() + " is taking longer than usual");
+
+            // Merge in player order, so the result doesn't depend on which script finished first.
+            // Each slot is read once, so a script finishing during the merge is either fully in or fully out.
+            List<Set<BoundAction>> finished = new ArrayList<>(scripts.size());
+            int total = 0;
+            for (int i = 0; i < scripts.size(); i++) {
+                Set<BoundAction> result = results.get(i);
+                if (result == null) {
+                    PlayerImpl player = scripts.get(i).getPlayerObject();
+                    System.out.println("WARN: Script for " + player.getName() + " is taking longer than usual");
+                    player.getStats().recordTimeout();
+                } else {
+                    finished.add(result);
+                    total += result.size();
                 }
             }
+            List<BoundAction> merged = new ArrayList<>(total);
+            for (Set<BoundAction> result : finished) {
+                merged.addAll(result);
+            }
+            List<BoundAction> safeActions = Collections.unmodifiableList(merged);
             game.postTick(safeActions);
-            scripts.forEach(data -> data.tickEnded(safeActions));
+            GameModel previousSnapshot = snapshot;
+            snapshot = game.snapshot();
+            GameDelta delta = null;
+            for (PlayerConnection conn : scripts) {
+                if (conn instanceof DeltaPlayerConnection) {
+                    if (delta == null) {
+                        delta = GameDelta.between(previousSnapshot, snapshot);
+                    }
+                    ((DeltaPlayerConnection) conn).tickEnded(delta, snapshot);
+                } else {
+                    conn.tickEnded(safeActions, snapshot);
+                }
+            }
 
             long end = System.currentTimeMillis();
-            if (end - start < 1000) {
+            if (end - start < tickLength) {
                 try {
-                    Thread.sleep(1000 - end + start);
+                    Thread.sleep(tickLength - end + start);
                 } catch (InterruptedException e) {
                     handleInterrupted();
                     return;
@@ -104,8 +152,20 @@ public final class ServerThread implements Runnable {
         scripts.forEach(PlayerConnection::gameEnded);
     }
 
+    public GameModel getGame() {
+        return game;
+    }
+
+    public List<PlayerImpl> getPlayers() {
+        List<PlayerImpl> players = new ArrayList<>(scripts.size());
+        for (PlayerConnection conn : scripts) {
+            players.add(conn.getPlayerObject());
+        }
+        return players;
+    }
+
     private void handleInterrupted() {
-        // TODO will need different handling in multiplayer
+        // Socket players are sent GAME_ENDED and disconnected once it has been written.
         scripts.forEach(PlayerConnection::gameEnded);
         Thread.currentThread().interrupt();
     }
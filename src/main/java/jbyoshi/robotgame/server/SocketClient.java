@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame.server;
+
+import jbyoshi.robotgame.action.BoundAction;
+import jbyoshi.robotgame.impl.GameView;
+import jbyoshi.robotgame.impl.PlayerImpl;
+import jbyoshi.robotgame.model.GameDelta;
+import jbyoshi.robotgame.model.GameModel;
+import jbyoshi.robotgame.script.Script;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Plays a game hosted by a {@link SocketServer}. The client keeps its own copy
+ * of the game, which is updated with the changes the server sends after every
+ * tick, and runs the script on that copy.
+ */
+public final class SocketClient implements Runnable {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final Script script;
+    private List<PlayerImpl> players;
+    private PlayerImpl player;
+    private GameModel game;
+
+    public SocketClient(String host, int port, Script script) throws IOException {
+        this.script = script;
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = socket.getOutputStream();
+    }
+
+    /**
+     * Gets the player this client is playing as.
+     *
+     * @return The player, or null if the game has not started yet
+     */
+    public PlayerImpl getPlayer() {
+        return player;
+    }
+
+    /**
+     * Gets this client's copy of the game.
+     *
+     * @return The game, or null if the game has not started yet
+     */
+    public GameModel getGame() {
+        return game;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (readMessage()) {
+            }
+        } catch (EOFException e) {
+            System.err.println("Lost connection to the server");
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private boolean readMessage() throws IOException {
+        int length = in.readInt();
+        if (length < 1 || length > WireFormat.MAX_FRAME_LENGTH) {
+            throw new IOException("Bad frame length " + length);
+        }
+        byte[] body = new byte[length];
+        in.readFully(body);
+        DataInputStream message = new DataInputStream(new ByteArrayInputStream(body));
+        byte type = message.readByte();
+        switch (type) {
+            case WireFormat.GAME_STARTED:
+                players = WireFormat.readPlayers(message);
+                player = players.get(message.readUnsignedByte());
+                game = new GameModel(message.readLong(), WireFormat.readMap(message));
+                WireFormat.readDelta(message, players).applyTo(game);
+                return true;
+            case WireFormat.START_TICK:
+                int tick = message.readInt();
+                Set<BoundAction> actions = tick();
+                ByteBuffer frame = WireFormat.frame(WireFormat.ACTIONS, o -> WireFormat.writeActions(o, tick, actions));
+                out.write(frame.array(), frame.arrayOffset(), frame.remaining());
+                out.flush();
+                return true;
+            case WireFormat.DELTA:
+                GameDelta delta = WireFormat.readDelta(message, players);
+                delta.applyTo(game);
+                return true;
+            case WireFormat.GAME_ENDED:
+                return false;
+            default:
+                throw new IOException("Unexpected message " + type);
+        }
+    }
+
+    private Set<BoundAction> tick() {
+        try {
+            GameView view = new GameView(game, player);
+            script.tick(view);
+            return view.popActions();
+        } catch (Throwable e) {
+            System.err.print("Error in script for " + player.getName() + ": ");
+            e.printStackTrace();
+            return new HashSet<>();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame.server;
+
+import jbyoshi.robotgame.action.*;
+import jbyoshi.robotgame.impl.PlayerImpl;
+import jbyoshi.robotgame.model.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A player on the other end of a socket. The game thread calls the
+ * {@link PlayerConnection} methods, which only queue messages; all of the
+ * reading and writing is done by the {@link SocketServer}'s selector thread.
+ */
+final class SocketPlayerConnection implements DeltaPlayerConnection {
+    private final SocketServer server;
+    private final SocketChannel channel;
+    private final PlayerImpl player;
+    private final List<PlayerImpl> players;
+    private final Queue<ByteBuffer> outgoing = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer header = ByteBuffer.allocate(4);
+    private ByteBuffer body;
+    private SelectionKey key;
+
+    // Guarded by this
+    private GameModel lastSnapshot;
+    private int tick;
+    private CompletableFuture<Set<BoundAction>> pending;
+    private boolean ending;
+    private volatile boolean closed;
+
+    SocketPlayerConnection(SocketServer server, SocketChannel channel, PlayerImpl player, List<PlayerImpl> players) {
+        this.server = server;
+        this.channel = channel;
+        this.player = player;
+        this.players = players;
+    }
+
+    void register(SelectionKey key) {
+        this.key = key;
+        key.attach(this);
+    }
+
+    @Override
+    public PlayerImpl getPlayerObject() {
+        return player;
+    }
+
+    @Override
+    public void gameStarted(GameModel model) {
+        synchronized (this) {
+            lastSnapshot = model;
+        }
+        send(WireFormat.GAME_STARTED, out -> WireFormat.writeGameStarted(out, players, player, model));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Set<BoundAction>> startTick() {
+        if (closed || ending) {
+            return CompletableFuture.completedFuture(Collections.emptySet());
+        }
+        // An older tick that never got an answer is dropped, like in ScriptThread.
+        pending = new CompletableFuture<>();
+        int tick = ++this.tick;
+        send(WireFormat.START_TICK, out -> out.writeInt(tick));
+        return pending;
+    }
+
+    @Override
+    public void tickEnded(GameDelta delta, GameModel snapshot) {
+        synchronized (this) {
+            lastSnapshot = snapshot;
+        }
+        send(WireFormat.DELTA, out -> WireFormat.writeDelta(out, players, delta));
+    }
+
+    @Override
+    public void tickEnded(List<BoundAction> allActions, GameModel snapshot) {
+        GameModel previous;
+        synchronized (this) {
+            previous = lastSnapshot;
+        }
+        tickEnded(GameDelta.between(previous, snapshot), snapshot);
+    }
+
+    @Override
+    public synchronized void gameEnded() {
+        if (ending) {
+            return;
+        }
+        // Queued before ending is set, so the selector thread can't close the
+        // connection without sending it.
+        send(WireFormat.GAME_ENDED, out -> {});
+        ending = true;
+    }
+
+    boolean isOpen() {
+        return !closed;
+    }
+
+    private void send(byte type, WireFormat.Writer contents) {
+        if (closed) {
+            return;
+        }
+        try {
+            outgoing.add(WireFormat.frame(type, contents));
+        } catch (IOException e) {
+            throw new AssertionError(e); // Only writing to memory
+        }
+        server.requestWrite(this);
+    }
+
+    /**
+     * Called by the selector thread when messages have been queued.
+     */
+    void updateInterest() {
+        if (!closed && key.isValid() && !outgoing.isEmpty()) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Called by the selector thread when the channel can be written to.
+     */
+    void handleWrite() throws IOException {
+        ByteBuffer buf;
+        while ((buf = outgoing.peek()) != null) {
+            channel.write(buf);
+            if (buf.hasRemaining()) {
+                return;
+            }
+            outgoing.poll();
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        synchronized (this) {
+            if (!ending || !outgoing.isEmpty()) {
+                return;
+            }
+        }
+        // Everything has been sent, including GAME_ENDED.
+        close();
+    }
+
+    /**
+     * Called by the selector thread when the channel can be read from.
+     */
+    void handleRead() throws IOException {
+        while (true) {
+            ByteBuffer target = body == null ? header : body;
+            int read = channel.read(target);
+            if (read < 0) {
+                close();
+                return;
+            }
+            if (target.hasRemaining()) {
+                return;
+            }
+            if (body == null) {
+                int length = header.getInt(0);
+                if (length < 1 || length > WireFormat.MAX_FRAME_LENGTH) {
+                    throw new IOException("Bad frame length " + length + " from " + player.getName());
+                }
+                body = ByteBuffer.allocate(length);
+            } else {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(body.array()));
+                header.clear();
+                body = null;
+                handleMessage(in);
+            }
+        }
+    }
+
+    private void handleMessage(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        if (type != WireFormat.ACTIONS) {
+            throw new IOException("Unexpected message " + type + " from " + player.getName());
+        }
+        int tick = in.readInt();
+        Set<BoundAction> actions = WireFormat.readActions(in);
+        synchronized (this) {
+            // Answers to ticks that have already been given up on are ignored.
+            if (tick == this.tick && pending != null) {
+                // The client can send anything, so only keep what the API
+                // would have let its script do in the game it was sent.
+                actions.removeIf(action -> !isAllowed(action, lastSnapshot));
+                pending.complete(actions);
+                pending = null;
+            }
+        }
+    }
+
+    /**
+     * Determines whether an action could have been made by this player's
+     * script: the target must be one of the player's own models, of the kind
+     * the action is for, and a spawner can only start spawning when it isn't
+     * already.
+     */
+    private boolean isAllowed(BoundAction action, GameModel game) {
+        Model target = game.getModelById(action.targetId);
+        if (!(target instanceof OwnedModel) || !((OwnedModel) target).getPlayer().equals(player)) {
+            return false;
+        }
+        if (action.action instanceof RobotMoveAction || action.action instanceof RobotAttackObjectAction) {
+            return target instanceof RobotModel;
+        }
+        if (action.action instanceof SpawnerStartSpawnAction) {
+            return target instanceof SpawnerModel && ((SpawnerModel) target).spawningRobot == null;
+        }
+        return false;
+    }
+
+    /**
+     * Closes the connection. Any tick still waiting on this player finishes
+     * with no actions.
+     */
+    void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (pending != null) {
+                pending.complete(Collections.emptySet());
+                pending = null;
+            }
+        }
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame.server;
+
+import jbyoshi.robotgame.impl.PlayerImpl;
+import jbyoshi.robotgame.model.GameModel;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hosts a game for players connecting with a {@link SocketClient}. A single
+ * selector thread (the one calling {@link #run()}) handles every connection;
+ * once all of the players have connected, the game itself runs in a
+ * {@link ServerThread} on its own thread.
+ */
+public final class SocketServer implements Runnable {
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final List<PlayerImpl> players;
+    private final long tickLength;
+    private final long seed;
+    private final List<SocketPlayerConnection> connections = new ArrayList<>();
+    private final Queue<SocketPlayerConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private volatile ServerThread server;
+
+    /**
+     * Creates a server and starts listening.
+     *
+     * @param port The port to listen on, or 0 to pick any free port
+     * @param players The players in the game, in the order they are given to
+     *                connecting clients
+     * @param tickLength The minimum length of a tick, in milliseconds
+     * @param seed The seed for the game
+     * @throws IOException If the port cannot be opened
+     */
+    public SocketServer(int port, List<PlayerImpl> players, long tickLength, long seed) throws IOException {
+        this.players = Collections.unmodifiableList(new ArrayList<>(players));
+        this.tickLength = tickLength;
+        this.seed = seed;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Gets the game being played.
+     *
+     * @return The game, or null if not every player has connected yet
+     */
+    public GameModel getGame() {
+        ServerThread server = this.server;
+        return server == null ? null : server.getGame();
+    }
+
+    void requestWrite(SocketPlayerConnection conn) {
+        pendingWrites.add(conn);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        Thread gameThread = null;
+        try {
+            while (gameThread == null || connections.stream().anyMatch(SocketPlayerConnection::isOpen)) {
+                selector.select();
+                SocketPlayerConnection conn;
+                while ((conn = pendingWrites.poll()) != null) {
+                    conn.updateInterest();
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (key.isValid() && key.isAcceptable()) {
+                        accept();
+                    } else {
+                        handle((SocketPlayerConnection) key.attachment(), key);
+                    }
+                }
+                if (gameThread == null && connections.size() == players.size()) {
+                    serverChannel.close();
+                    server = new ServerThread(connections, tickLength, seed);
+                    gameThread = new Thread(() -> {
+                        try {
+                            server.run();
+                        } finally {
+                            // Make sure the selector loop finishes even if the game failed.
+                            connections.forEach(SocketPlayerConnection::gameEnded);
+                        }
+                    }, "Game server");
+                    gameThread.start();
+                }
+            }
+            gameThread.join();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (gameThread != null) {
+                gameThread.interrupt();
+            }
+            connections.forEach(SocketPlayerConnection::close);
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        if (connections.size() == players.size()) {
+            channel.close();
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        PlayerImpl player = players.get(connections.size());
+        SocketPlayerConnection conn = new SocketPlayerConnection(this, channel, player, players);
+        conn.register(channel.register(selector, SelectionKey.OP_READ));
+        connections.add(conn);
+        System.out.println(player.getName() + " connected from " + channel.getRemoteAddress());
+    }
+
+    private void handle(SocketPlayerConnection conn, SelectionKey key) {
+        try {
+            if (key.isValid() && key.isReadable()) {
+                conn.handleRead();
+            }
+            if (key.isValid() && key.isWritable()) {
+                conn.handleWrite();
+            }
+        } catch (IOException | CancelledKeyException e) {
+            System.out.println(conn.getPlayerObject().getName() + " disconnected: " + e.getMessage());
+            conn.close();
+        }
+    }
+}
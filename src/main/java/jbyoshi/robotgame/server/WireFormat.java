@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame.server;
+
+import java.awt.Color;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import jbyoshi.robotgame.action.*;
+import jbyoshi.robotgame.api.Direction;
+import jbyoshi.robotgame.impl.PlayerImpl;
+import jbyoshi.robotgame.model.*;
+
+/**
+ * The binary messages sent between a {@link SocketServer} and a
+ * {@link SocketClient}. Every message is a frame made of a 4-byte length,
+ * followed by that many bytes: a 1-byte message type and its contents.
+ * Players are sent as their index in the table from {@link #GAME_STARTED}.
+ */
+final class WireFormat {
+    /**
+     * Server to client: the player table, the client's player, the seed, the
+     * map, and the whole game as a delta.
+     */
+    static final byte GAME_STARTED = 0;
+    /**
+     * Server to client: the number of the tick that is starting.
+     */
+    static final byte START_TICK = 1;
+    /**
+     * Client to server: a tick number and the actions for it.
+     */
+    static final byte ACTIONS = 2;
+    /**
+     * Server to client: the changes from the last tick.
+     */
+    static final byte DELTA = 3;
+    /**
+     * Server to client: the game is over and the connection will be closed.
+     */
+    static final byte GAME_ENDED = 4;
+
+    private static final byte MOVE = 0, ATTACK = 1, SPAWN = 2;
+    private static final byte ROBOT = 0, SPAWNER = 1;
+
+    static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private WireFormat() {
+    }
+
+    static ByteBuffer frame(byte type, Writer contents) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeByte(type);
+        contents.write(out);
+        out.flush();
+        ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+        buf.putInt(0, buf.remaining() - 4);
+        return buf;
+    }
+
+    static void writeGameStarted(DataOutput out, List<PlayerImpl> players, PlayerImpl you, GameModel game)
+            throws IOException {
+        out.writeByte(players.size());
+        for (PlayerImpl player : players) {
+            out.writeUTF(player.getName());
+            out.writeInt(player.getColor().getRGB());
+        }
+        out.writeByte(players.indexOf(you));
+        out.writeLong(game.getSeed());
+        writeMap(out, game.map);
+        writeDelta(out, players, GameDelta.of(game));
+    }
+
+    static void writeMap(DataOutput out, boolean[][] map) throws IOException {
+        out.writeShort(map.length);
+        out.writeShort(map[0].length);
+        int bits = 0, numBits = 0;
+        for (boolean[] column : map) {
+            for (boolean wall : column) {
+                bits = (bits << 1) | (wall ? 1 : 0);
+                if (++numBits == 8) {
+                    out.writeByte(bits);
+                    bits = numBits = 0;
+                }
+            }
+        }
+        if (numBits > 0) {
+            out.writeByte(bits << (8 - numBits));
+        }
+    }
+
+    static boolean[][] readMap(DataInput in) throws IOException {
+        boolean[][] map = new boolean[in.readUnsignedShort()][in.readUnsignedShort()];
+        int bits = 0, numBits = 0;
+        for (boolean[] column : map) {
+            for (int y = 0; y < column.length; y++) {
+                if (numBits == 0) {
+                    bits = in.readUnsignedByte();
+                    numBits = 8;
+                }
+                column[y] = (bits & (1 << --numBits)) != 0;
+            }
+        }
+        return map;
+    }
+
+    static List<PlayerImpl> readPlayers(DataInput in) throws IOException {
+        int count = in.readUnsignedByte();
+        List<PlayerImpl> players = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            players.add(new PlayerImpl(in.readUTF(), new Color(in.readInt(), true)));
+        }
+        return players;
+    }
+
+    static void writeDelta(DataOutput out, List<PlayerImpl> players, GameDelta delta) throws IOException {
+        out.writeInt(delta.getTicks());
+        out.writeBoolean(delta.isEnded());
+        out.writeByte(delta.getWinner() == null ? -1 : players.indexOf(delta.getWinner()));
+        out.writeInt(delta.getIdLimit());
+        int[] removed = delta.getRemoved();
+        out.writeInt(removed.length);
+        for (int id : removed) {
+            out.writeInt(id);
+        }
+        out.writeInt(delta.getChanged().size());
+        for (GameDelta.ModelState state : delta.getChanged()) {
+            out.writeInt(state.id);
+            out.writeByte(state.type == SpawnerModel.class ? SPAWNER : ROBOT);
+            out.writeByte(players.indexOf(state.player));
+            out.writeShort(state.x);
+            out.writeShort(state.y);
+            out.writeShort(state.health);
+            if (state.type == SpawnerModel.class) {
+                out.writeByte(state.countdown);
+                out.writeByte(state.totalCountdown);
+                out.writeInt(state.spawningId);
+            }
+        }
+    }
+
+    static GameDelta readDelta(DataInput in, List<PlayerImpl> players) throws IOException {
+        int ticks = in.readInt();
+        boolean ended = in.readBoolean();
+        byte winner = in.readByte();
+        int idLimit = in.readInt();
+        int[] removed = new int[in.readInt()];
+        for (int i = 0; i < removed.length; i++) {
+            removed[i] = in.readInt();
+        }
+        int numChanged = in.readInt();
+        List<GameDelta.ModelState> changed = new ArrayList<>(numChanged);
+        for (int i = 0; i < numChanged; i++) {
+            int id = in.readInt();
+            byte type = in.readByte();
+            PlayerImpl player = players.get(in.readUnsignedByte());
+            int x = in.readShort(), y = in.readShort(), health = in.readShort();
+            if (type == SPAWNER) {
+                changed.add(new GameDelta.ModelState(id, SpawnerModel.class, player, x, y, health,
+                        in.readUnsignedByte(), in.readUnsignedByte(), in.readInt()));
+            } else if (type == ROBOT) {
+                changed.add(new GameDelta.ModelState(id, RobotModel.class, player, x, y, health, 0, 0, -1));
+            } else {
+                throw new IOException("Unknown model type " + type);
+            }
+        }
+        return new GameDelta(ticks, ended, winner < 0 ? null : players.get(winner), idLimit, removed, changed);
+    }
+
+    static void writeActions(DataOutput out, int tick, Collection<BoundAction> actions) throws IOException {
+        out.writeInt(tick);
+        out.writeInt(actions.size());
+        for (BoundAction action : actions) {
+            out.writeInt(action.targetId);
+            if (action.action instanceof RobotMoveAction) {
+                out.writeByte(MOVE);
+                Direction dir = ((RobotMoveAction) action.action).getDirection();
+                out.writeByte(dir == null ? -1 : dir.ordinal());
+            } else if (action.action instanceof RobotAttackObjectAction) {
+                out.writeByte(ATTACK);
+                out.writeInt(((RobotAttackObjectAction) action.action).getTarget());
+            } else if (action.action instanceof SpawnerStartSpawnAction) {
+                out.writeByte(SPAWN);
+            } else {
+                throw new IllegalArgumentException("Unknown action " + action.action.getClass().getName());
+            }
+        }
+    }
+
+    static Set<BoundAction> readActions(DataInput in) throws IOException {
+        int count = in.readInt();
+        Set<BoundAction> actions = new LinkedHashSet<>();
+        for (int i = 0; i < count; i++) {
+            int target = in.readInt();
+            byte type = in.readByte();
+            Action<?> action;
+            switch (type) {
+                case MOVE:
+                    byte dir = in.readByte();
+                    if (dir >= Direction.values().length) {
+                        throw new IOException("Unknown direction " + dir);
+                    }
+                    action = new RobotMoveAction(dir < 0 ? null : Direction.values()[dir]);
+                    break;
+                case ATTACK:
+                    action = new RobotAttackObjectAction(in.readInt());
+                    break;
+                case SPAWN:
+                    action = new SpawnerStartSpawnAction();
+                    break;
+                default:
+                    throw new IOException("Unknown action type " + type);
+            }
+            actions.add(new BoundAction(action, target));
+        }
+        return actions;
+    }
+
+    interface Writer {
+        void write(DataOutput out) throws IOException;
+    }
+}
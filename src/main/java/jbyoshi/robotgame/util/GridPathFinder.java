@@ -0,0 +1,403 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame.util;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+
+import jbyoshi.robotgame.api.Direction;
+import jbyoshi.robotgame.api.FlowField;
+import jbyoshi.robotgame.api.Game;
+import jbyoshi.robotgame.api.Path;
+import jbyoshi.robotgame.api.Point;
+
+/**
+ * A path finder specialized for the wrapping game grid. Unlike
+ * {@link AStarPathFinder} and {@link DijkstraPathFinder}, all of the search
+ * state is kept in arrays indexed by {@link #index(int, int)} which are reused
+ * between searches, so a search does not allocate anything until the path is
+ * built.
+ * <p>
+ * Instances are not thread-safe, and each one holds several arrays the size
+ * of the world, so they are borrowed from a small pool with
+ * {@link #use(Function)} instead of being kept by every thread. Script ticks
+ * can run on a new virtual thread each time, so a per-thread instance would
+ * be thrown away after every tick.
+ */
+public final class GridPathFinder {
+    private static final int SIZE = Game.WORLD_SIZE;
+    private static final int CELLS = SIZE * SIZE;
+    private static final Direction[] DIRECTIONS = Direction.values();
+    /**
+     * Path finders that aren't being used. Searches don't block, so there are
+     * rarely more running at once than there are processors; any extra
+     * finders made while it is empty are dropped when they are given back.
+     */
+    private static final BlockingQueue<GridPathFinder> idle = new ArrayBlockingQueue<>(
+            Runtime.getRuntime().availableProcessors());
+
+    private final int[] weightToStart = new int[CELLS];
+    private final int[] weight = new int[CELLS];
+    private final int[] parent = new int[CELLS];
+    private final int[] origin = new int[CELLS];
+    private final int[] seen = new int[CELLS];
+    private final int[] closed = new int[CELLS];
+    private final int[] heap = new int[CELLS];
+    private final int[] heapIndex = new int[CELLS];
+    private int heapSize;
+    private int searchId;
+
+    private GridPathFinder() {
+    }
+
+    /**
+     * Runs a search with a path finder that nothing else is using.
+     *
+     * @param search The search, which must not keep the path finder after it
+     *               returns
+     * @return What the search returned
+     */
+    public static <T> T use(Function<GridPathFinder, T> search) {
+        GridPathFinder finder = idle.poll();
+        if (finder == null) {
+            finder = new GridPathFinder();
+        }
+        try {
+            return search.apply(finder);
+        } finally {
+            idle.offer(finder);
+        }
+    }
+
+    public static int index(int x, int y) {
+        return x * SIZE + y;
+    }
+
+    public static int index(Point point) {
+        return index(point.getX(), point.getY());
+    }
+
+    /**
+     * Finds the shortest path between two points using A*.
+     *
+     * @param start The point to start at
+     * @param end The point to end at
+     * @param grid The grid to search
+     * @param random Used to break ties between equally short paths
+     * @return The path, or an empty optional if there is no path
+     */
+    public Optional<Path> search(Point start, Point end, Grid grid, Random random) {
+        int endIndex = index(end);
+        return search(start, index -> index == endIndex, end.getX(), end.getY(), grid, random);
+    }
+
+    /**
+     * Finds the shortest path from a point to any point accepted by the given
+     * predicate using Dijkstra's algorithm.
+     *
+     * @param start The point to start at
+     * @param end Whether a point (given as its {@linkplain #index(int, int)
+     *            index}) is a valid end point
+     * @param grid The grid to search
+     * @param random Used to break ties between equally short paths
+     * @return The path, or an empty optional if there is no path
+     */
+    public Optional<Path> search(Point start, IntPredicate end, Grid grid, Random random) {
+        return search(start, end, -1, -1, grid, random);
+    }
+
+    private Optional<Path> search(Point start, IntPredicate end, int endX, int endY, Grid grid, Random random) {
+        if (++searchId == 0) {
+            // Wrapped around; the old marks could be mistaken for this search.
+            Arrays.fill(seen, 0);
+            Arrays.fill(closed, 0);
+            searchId = 1;
+        }
+        heapSize = 0;
+
+        int startIndex = index(start);
+        open(startIndex, -1, 0, estimate(start.getX(), start.getY(), endX, endY));
+        int firstDirection = random.nextInt(DIRECTIONS.length);
+        while (heapSize > 0) {
+            int node = pop();
+            if (end.test(node)) {
+                return Optional.of(buildPath(start, node));
+            }
+            closed[node] = searchId;
+
+            int x = node / SIZE, y = node % SIZE;
+            for (int i = 0; i < DIRECTIONS.length; i++) {
+                Direction dir = DIRECTIONS[(firstDirection + i) % DIRECTIONS.length];
+                int nx = wrap(x + dir.dx), ny = wrap(y + dir.dy);
+                int next = index(nx, ny);
+                if (closed[next] == searchId || !grid.isWalkable(nx, ny)) {
+                    continue;
+                }
+                int nextWeightToStart = weightToStart[node] + grid.getResistance(nx, ny);
+                if (seen[next] == searchId) {
+                    if (weightToStart[next] <= nextWeightToStart) {
+                        continue;
+                    }
+                    weightToStart[next] = nextWeightToStart;
+                    weight[next] = nextWeightToStart + estimate(nx, ny, endX, endY);
+                    parent[next] = node;
+                    siftUp(heapIndex[next]);
+                } else {
+                    open(next, node, nextWeightToStart, estimate(nx, ny, endX, endY));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Finds which of the given end points is nearest to each of the given start
+     * points, using one Dijkstra search outward from all of the end points at
+     * once. Distances are measured the same way as in the other searches: the
+     * resistance of every cell entered on the way from the start, and every
+     * cell after the start must be walkable. Ties are broken arbitrarily.
+     *
+     * @param starts The points to start at
+     * @param ends The points to end at
+     * @param grid The grid to search
+     * @return For each start point, the index in {@code ends} of the nearest
+     *         end point, or -1 if none of them can be reached
+     */
+    public int[] nearest(Point[] starts, Point[] ends, Grid grid) {
+        boolean[] isStart = new boolean[CELLS];
+        int remaining = 0;
+        for (Point start : starts) {
+            int index = index(start);
+            if (!isStart[index]) {
+                isStart[index] = true;
+                remaining++;
+            }
+        }
+        searchBackwards(ends, grid, isStart, remaining);
+
+        int[] nearest = new int[starts.length];
+        for (int i = 0; i < starts.length; i++) {
+            int index = index(starts[i]);
+            nearest[i] = closed[index] == searchId ? origin[index] : -1;
+        }
+        return nearest;
+    }
+
+    /**
+     * Finds the shortest paths from every point to the nearest of the given
+     * end points, using one Dijkstra search outward from all of them. The
+     * distances are measured like in {@link #nearest(Point[], Point[], Grid)}.
+     *
+     * @param ends The points to end at
+     * @param grid The grid to search
+     * @return The paths
+     */
+    public FlowField flowField(Point[] ends, Grid grid) {
+        searchBackwards(ends, grid, null, -1);
+
+        int[] distances = new int[CELLS];
+        Direction[] directions = new Direction[CELLS];
+        for (int node = 0; node < CELLS; node++) {
+            if (closed[node] != searchId) {
+                distances[node] = -1;
+                continue;
+            }
+            distances[node] = weightToStart[node];
+            if (parent[node] >= 0) {
+                int x = node / SIZE, y = node % SIZE;
+                for (Direction dir : DIRECTIONS) {
+                    if (index(wrap(x + dir.dx), wrap(y + dir.dy)) == parent[node]) {
+                        directions[node] = dir;
+                        break;
+                    }
+                }
+            }
+        }
+        return new FlowField(distances, directions);
+    }
+
+    /**
+     * Searches from the end points towards everywhere else. Afterwards, every
+     * cell that was reached is closed, its parent is the next cell on the way
+     * to the nearest end point, and its origin is the index of that end point.
+     *
+     * @param stopAt The cells to stop after, or null to search everywhere
+     * @param remaining How many cells in {@code stopAt} there are
+     */
+    private void searchBackwards(Point[] ends, Grid grid, boolean[] stopAt, int remaining) {
+        if (++searchId == 0) {
+            Arrays.fill(seen, 0);
+            Arrays.fill(closed, 0);
+            searchId = 1;
+        }
+        heapSize = 0;
+
+        for (int i = 0; i < ends.length; i++) {
+            int index = index(ends[i]);
+            if (seen[index] != searchId) {
+                open(index, -1, 0, 0);
+                origin[index] = i;
+            }
+        }
+
+        // Searching backwards, so moving from a cell costs that cell's
+        // resistance, and only walkable cells are passed through.
+        while (heapSize > 0 && remaining != 0) {
+            int node = pop();
+            closed[node] = searchId;
+            if (stopAt != null && stopAt[node]) {
+                remaining--;
+            }
+
+            int x = node / SIZE, y = node % SIZE;
+            if (!grid.isWalkable(x, y)) {
+                continue;
+            }
+            int nextWeightToStart = weightToStart[node] + grid.getResistance(x, y);
+            for (Direction dir : DIRECTIONS) {
+                int next = index(wrap(x + dir.dx), wrap(y + dir.dy));
+                if (closed[next] == searchId) {
+                    continue;
+                }
+                if (seen[next] == searchId) {
+                    if (weightToStart[next] <= nextWeightToStart) {
+                        continue;
+                    }
+                    weightToStart[next] = weight[next] = nextWeightToStart;
+                    parent[next] = node;
+                    siftUp(heapIndex[next]);
+                } else {
+                    open(next, node, nextWeightToStart, 0);
+                }
+                origin[next] = origin[node];
+            }
+        }
+    }
+
+    private Path buildPath(Point start, int end) {
+        int length = 0;
+        for (int node = end; parent[node] >= 0; node = parent[node]) {
+            length++;
+        }
+        Point[] points = new Point[length];
+        for (int node = end; parent[node] >= 0; node = parent[node]) {
+            points[--length] = new Point(node / SIZE, node % SIZE);
+        }
+        return new Path(start, points);
+    }
+
+    private static int estimate(int x, int y, int endX, int endY) {
+        if (endX < 0) {
+            return 0;
+        }
+        int dx = Math.abs(x - endX), dy = Math.abs(y - endY);
+        return Math.min(dx, SIZE - dx) + Math.min(dy, SIZE - dy);
+    }
+
+    private static int wrap(int val) {
+        if (val < 0) return val + SIZE;
+        if (val >= SIZE) return val - SIZE;
+        return val;
+    }
+
+    private void open(int node, int parentNode, int nodeWeightToStart, int estimate) {
+        seen[node] = searchId;
+        parent[node] = parentNode;
+        weightToStart[node] = nodeWeightToStart;
+        weight[node] = nodeWeightToStart + estimate;
+        heap[heapSize] = node;
+        heapIndex[node] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private int pop() {
+        int top = heap[0];
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndex[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int pos) {
+        int node = heap[pos];
+        while (pos > 0) {
+            int parentPos = (pos - 1) >>> 1;
+            int parentNode = heap[parentPos];
+            if (weight[parentNode] <= weight[node]) {
+                break;
+            }
+            heap[pos] = parentNode;
+            heapIndex[parentNode] = pos;
+            pos = parentPos;
+        }
+        heap[pos] = node;
+        heapIndex[node] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int node = heap[pos];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && weight[heap[child + 1]] < weight[heap[child]]) {
+                child++;
+            }
+            if (weight[node] <= weight[heap[child]]) {
+                break;
+            }
+            heap[pos] = heap[child];
+            heapIndex[heap[pos]] = pos;
+            pos = child;
+        }
+        heap[pos] = node;
+        heapIndex[node] = pos;
+    }
+
+    /**
+     * The cells that a {@link GridPathFinder} searches through.
+     */
+    public interface Grid {
+        /**
+         * Determines whether a path can go through the given cell.
+         *
+         * @param x The X coordinate of the cell
+         * @param y The Y coordinate of the cell
+         * @return Whether the cell can be walked through
+         */
+        boolean isWalkable(int x, int y);
+
+        /**
+         * Determines the amount of resistance of moving into the given cell.
+         * Larger resistance values indicate a slower/longer/etc. path.
+         *
+         * @param x The X coordinate of the cell
+         * @param y The Y coordinate of the cell
+         * @return The resistance of entering the cell
+         */
+        int getResistance(int x, int y);
+    }
+}
@@ -17,66 +17,151 @@
 package jbyoshi.robotgame.util;
 
 import jbyoshi.robotgame.api.Game;
+import jbyoshi.robotgame.api.Point;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
 
 public final class MapGen {
     private static final int HALF_PASSAGE_SIZE = 2;
     private static final int HALF_PASSAGE_VARIATION = 8;
-    public static boolean[][] createMap() {
-        boolean[][] map = new boolean[Game.WORLD_SIZE][Game.WORLD_SIZE];
-        for (int x = 0; x < map.length; x++) {
-            for (int y = 0; y < map[0].length; y++) {
-                map[x][y] = (x < 10 || (x >= 15 && x < 35) || x >= 40) || (y < 10 || (y >= 15 && y < 35) || y >= 40);
+    private static final int MIN_ROOM_SPACING = 20;
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    public static boolean[][] createMap(Random random, int players) {
+        return createMap(random, players, Game.WORLD_SIZE >= PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Creates a map. The map is a grid of rooms, one for each player (with
+     * some left over if the number of players isn't square), joined by
+     * passages.
+     *
+     * @param random The source of randomness
+     * @param players The number of players
+     * @param parallel Whether to smooth the rows of the map in parallel. This
+     *                 doesn't change the map that is made.
+     * @return The map, with {@code true} for walls
+     */
+    public static boolean[][] createMap(Random random, int players, boolean parallel) {
+        int rooms = roomsAcross(players);
+        int spacing = Game.WORLD_SIZE / rooms;
+        if (spacing < MIN_ROOM_SPACING) {
+            throw new IllegalArgumentException("A world of size " + Game.WORLD_SIZE + " is too small for " + players
+                    + " players");
+        }
+        boolean[] inRoom = new boolean[Game.WORLD_SIZE];
+        for (int room = 0; room < rooms; room++) {
+            int center = roomCenter(room, rooms);
+            Arrays.fill(inRoom, center - spacing * 2 / 25, center + spacing * 3 / 25, true);
+        }
+
+        BitGrid map = new BitGrid(Game.WORLD_SIZE);
+        for (int x = 0; x < map.size; x++) {
+            for (int y = 0; y < map.size; y++) {
+                map.set(x, y, !inRoom[x] || !inRoom[y]);
+            }
+        }
+        // Passages from each room to the next one in the same row or column.
+        // The order matters, since each one uses the random numbers.
+        for (int from = 0; from < rooms; from++) {
+            for (int row = 0; row < rooms; row++) {
+                buildHorizontalPath(map, roomCenter(from, rooms), roomCenter((from + 1) % rooms, rooms),
+                        roomCenter(row, rooms), random);
+            }
+        }
+        for (int column = 0; column < rooms; column++) {
+            for (int from = 0; from < rooms; from++) {
+                buildVerticalPath(map, roomCenter(column, rooms), roomCenter(from, rooms),
+                        roomCenter((from + 1) % rooms, rooms), random);
             }
         }
-        buildHorizontalPath(map, Game.WORLD_SIZE / 4, Game.WORLD_SIZE * 3 / 4, Game.WORLD_SIZE / 4);
-        buildHorizontalPath(map, Game.WORLD_SIZE / 4, Game.WORLD_SIZE * 3 / 4, Game.WORLD_SIZE * 3 / 4);
-        buildHorizontalPath(map, Game.WORLD_SIZE * 3 / 4, Game.WORLD_SIZE / 4, Game.WORLD_SIZE / 4);
-        buildHorizontalPath(map, Game.WORLD_SIZE * 3 / 4, Game.WORLD_SIZE / 4, Game.WORLD_SIZE * 3 / 4);
-        buildVerticalPath(map, Game.WORLD_SIZE / 4, Game.WORLD_SIZE / 4, Game.WORLD_SIZE * 3 / 4);
-        buildVerticalPath(map, Game.WORLD_SIZE / 4, Game.WORLD_SIZE * 3 / 4, Game.WORLD_SIZE / 4);
-        buildVerticalPath(map, Game.WORLD_SIZE * 3 / 4, Game.WORLD_SIZE / 4, Game.WORLD_SIZE * 3 / 4);
-        buildVerticalPath(map, Game.WORLD_SIZE * 3 / 4, Game.WORLD_SIZE * 3 / 4, Game.WORLD_SIZE / 4);
 
-        map = runPasses(map, 1, (m, x, y) -> m[x][y] && Math.random() > 0.35);
-        map = runPasses(map, 6, (m, x, y) -> countWalls(m, x, y, 1) > 4);
-        map = removeInaccessibleCaverns(map, Game.WORLD_SIZE / 4, Game.WORLD_SIZE / 4);
+        // Uses the random numbers in order, so this pass is never parallel.
+        for (int x = 0; x < map.size; x++) {
+            for (int y = 0; y < map.size; y++) {
+                if (map.get(x, y) && random.nextDouble() <= 0.35) {
+                    map.set(x, y, false);
+                }
+            }
+        }
+        map = runPasses(map, 6, parallel, (m, x, y) -> countWalls(m, x, y) > 4);
+        map = removeInaccessibleCaverns(map, roomCenter(0, rooms), roomCenter(0, rooms));
 
-        return map;
+        return map.toArray();
     }
 
-    private static boolean[][] removeInaccessibleCaverns(boolean[][] map, int x, int y) {
-        boolean[][] out = new boolean[map.length][map[0].length];
-        for (boolean[] row : out) Arrays.fill(row, true);
-        removeInaccessibleCaverns(map, out, x, y);
-        return out;
+    /**
+     * Gets where the players' spawners go: the centers of the rooms in a map
+     * made by {@link #createMap(Random, int)}, a row at a time.
+     *
+     * @param players The number of players
+     * @return The locations, one for each player
+     */
+    public static List<Point> getSpawnPoints(int players) {
+        int rooms = roomsAcross(players);
+        List<Point> points = new ArrayList<>(players);
+        for (int row = 0; row < rooms && points.size() < players; row++) {
+            for (int column = 0; column < rooms && points.size() < players; column++) {
+                points.add(new Point(roomCenter(column, rooms), roomCenter(row, rooms)));
+            }
+        }
+        return points;
     }
 
-    private static void removeInaccessibleCaverns(boolean[][] in, boolean[][] out, int x, int y) {
-        if (!in[x][y] && out[x][y]) {
-            out[x][y] = false;
-            removeInaccessibleCaverns(in, out, wrap(x - 1), wrap(y - 1));
-            removeInaccessibleCaverns(in, out, wrap(x - 1), y);
-            removeInaccessibleCaverns(in, out, wrap(x - 1), wrap(y + 1));
-            removeInaccessibleCaverns(in, out, x, wrap(y - 1));
-            removeInaccessibleCaverns(in, out, x, wrap(y + 1));
-            removeInaccessibleCaverns(in, out, wrap(x + 1), wrap(y - 1));
-            removeInaccessibleCaverns(in, out, wrap(x + 1), y);
-            removeInaccessibleCaverns(in, out, wrap(x + 1), wrap(y + 1));
+    private static int roomsAcross(int players) {
+        int rooms = 2;
+        while (rooms * rooms < players) {
+            rooms++;
         }
+        return rooms;
+    }
+
+    private static int roomCenter(int room, int rooms) {
+        return Game.WORLD_SIZE * (2 * room + 1) / (2 * rooms);
     }
 
-    private static void buildHorizontalPath(boolean[][] map, int minX, int maxX, int y) {
+    private static BitGrid removeInaccessibleCaverns(BitGrid map, int x, int y) {
+        BitGrid out = new BitGrid(map.size);
+        out.fill(true);
+        if (map.get(x, y)) {
+            return out;
+        }
+        // Every cell is pushed at most once, so the stack can't overflow.
+        int[] stack = new int[map.size * map.size];
+        int top = 0;
+        out.set(x, y, false);
+        stack[top++] = x * map.size + y;
+        while (top > 0) {
+            int cell = stack[--top];
+            int cx = cell / map.size, cy = cell % map.size;
+            for (int dx = -1; dx <= 1; dx++) {
+                int nx = map.wrap(cx, dx);
+                for (int dy = -1; dy <= 1; dy++) {
+                    int ny = map.wrap(cy, dy);
+                    if (!map.get(nx, ny) && out.get(nx, ny)) {
+                        out.set(nx, ny, false);
+                        stack[top++] = nx * map.size + ny;
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    private static void buildHorizontalPath(BitGrid map, int minX, int maxX, int y, Random random) {
         int minY = y - HALF_PASSAGE_VARIATION, maxY = y + HALF_PASSAGE_VARIATION;
         int destY = (minY + maxY) / 2, currentX = minX, currentY = destY;
         while (currentX != maxX) {
             for (int ptY = currentY - HALF_PASSAGE_SIZE; ptY < currentY + HALF_PASSAGE_SIZE; ptY++) {
-                map[currentX][wrap(ptY)] = false;
+                map.set(currentX, wrap(ptY), false);
             }
             if (currentY == minY && currentY != maxY) currentY++;
             else if (currentY == maxY && currentY != minY) currentY--;
-            else switch ((int) (Math.random() * 3)) {
+            else switch (random.nextInt(3)) {
                 case 0:
                     if (currentY == minY + 1) {
                         if (currentY != maxY - 1) currentY++;
@@ -89,7 +174,7 @@ public final class MapGen {
                     break;
             }
             for (int ptY = currentY - HALF_PASSAGE_SIZE; ptY < currentY + HALF_PASSAGE_SIZE; ptY++) {
-                map[currentX][wrap(ptY)] = false;
+                map.set(currentX, wrap(ptY), false);
             }
 
             if (minY < destY - wrap(maxX - currentX)) minY++;
@@ -98,16 +183,16 @@ public final class MapGen {
         }
     }
 
-    private static void buildVerticalPath(boolean[][] map, int x, int minY, int maxY) {
+    private static void buildVerticalPath(BitGrid map, int x, int minY, int maxY, Random random) {
         int minX = x - HALF_PASSAGE_VARIATION, maxX = x + HALF_PASSAGE_VARIATION;
         int destX = (minX + maxX) / 2, currentX = destX, currentY = minY;
         while (currentY != maxY) {
             for (int ptX = currentX - HALF_PASSAGE_SIZE; ptX < currentX + HALF_PASSAGE_SIZE; ptX++) {
-                map[wrap(ptX)][currentY] = false;
+                map.set(wrap(ptX), currentY, false);
             }
             if (currentX == wrap(minX - 1) && currentX != maxX) currentX++;
             else if (currentX == maxX && currentX != minX) currentX--;
-            else switch ((int) (Math.random() * 3)) {
+            else switch (random.nextInt(3)) {
                     case 0:
                         if (currentX == minX + 1) {
                             if (currentX != maxX - 1) currentX++;
@@ -120,7 +205,7 @@ public final class MapGen {
                         break;
                 }
             for (int ptX = currentX - HALF_PASSAGE_SIZE; ptX < currentX + HALF_PASSAGE_SIZE; ptX++) {
-                map[wrap(ptX)][currentY] = false;
+                map.set(wrap(ptX), currentY, false);
             }
 
             if (minX < destX - wrap(maxY - currentY)) minX++;
@@ -129,27 +214,29 @@ public final class MapGen {
         }
     }
 
-    private static boolean[][] runPasses(boolean[][] map, int num, MapFilter filter) {
+    private static BitGrid runPasses(BitGrid map, int num, boolean parallel, MapFilter filter) {
+        // Each pass reads from one grid and writes to the other, and every row
+        // starts a new word, so rows can be filled in at the same time.
+        BitGrid spare = new BitGrid(map.size);
         for (int i = 0; i < num; i++) {
-            boolean[][] newMap = new boolean[map.length][map[0].length];
-            for (int x = 0; x < map.length; x++) {
-                for (int y = 0; y < map[0].length; y++) {
-                    newMap[x][y] = filter.test(map, x, y);
+            BitGrid in = map, out = spare;
+            IntStream rows = IntStream.range(0, map.size);
+            (parallel ? rows.parallel() : rows).forEach(x -> {
+                for (int y = 0; y < in.size; y++) {
+                    out.set(x, y, filter.test(in, x, y));
                 }
-            }
-            map = newMap;
+            });
+            spare = map;
+            map = out;
         }
         return map;
     }
 
-    private static int countWalls(boolean[][] map, int x, int y, int dist) {
+    private static int countWalls(BitGrid map, int x, int y) {
         int num = 0;
-        for (int dx = x - dist; dx <= x + dist; dx++) {
-            for (int dy = y - dist; dy <= y + dist; dy++) {
-                if (map[wrap(dx)][wrap(dy)]) {
-                    num++;
-                }
-            }
+        for (int dx = -1; dx <= 1; dx++) {
+            int nx = map.wrap(x, dx);
+            num += map.bit(nx, map.prev[y]) + map.bit(nx, y) + map.bit(nx, map.next[y]);
         }
         return num;
     }
@@ -161,6 +248,67 @@ public final class MapGen {
     }
 
     private interface MapFilter {
-        boolean test(boolean[][] map, int x, int y);
+        boolean test(BitGrid map, int x, int y);
+    }
+
+    /**
+     * A square, wrapping grid of bits, one row of {@code long}s for each X
+     * coordinate.
+     */
+    private static final class BitGrid {
+        final int size;
+        final int[] prev, next;
+        private final int rowWords;
+        private final long[] words;
+
+        BitGrid(int size) {
+            this.size = size;
+            this.rowWords = (size + 63) >>> 6;
+            this.words = new long[size * rowWords];
+            prev = new int[size];
+            next = new int[size];
+            for (int i = 0; i < size; i++) {
+                prev[i] = i == 0 ? size - 1 : i - 1;
+                next[i] = i == size - 1 ? 0 : i + 1;
+            }
+        }
+
+        /**
+         * Moves one step along an axis without calling {@code wrap()}.
+         */
+        int wrap(int val, int step) {
+            return step < 0 ? prev[val] : step > 0 ? next[val] : val;
+        }
+
+        int bit(int x, int y) {
+            return (int) (words[x * rowWords + (y >>> 6)] >>> y) & 1;
+        }
+
+        boolean get(int x, int y) {
+            return bit(x, y) != 0;
+        }
+
+        void set(int x, int y, boolean value) {
+            int index = x * rowWords + (y >>> 6);
+            if (value) {
+                words[index] |= 1L << y;
+            } else {
+                words[index] &= ~(1L << y);
+            }
+        }
+
+        void fill(boolean value) {
+            Arrays.fill(words, value ? -1L : 0L);
+        }
+
+        boolean[][] toArray() {
+            boolean[][] out = new boolean[size][size];
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    out[x][y] = get(x, y);
+                }
+            }
+            return out;
+        }
     }
 }
@@ -17,6 +17,7 @@
 package jbyoshi.robotgame.util;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Predicate;
 
 abstract class PathFinder<P> {
@@ -58,7 +59,7 @@ abstract class PathFinder<P> {
                 neighbors = new ArrayList<>();
                 neighborsIterable.forEach(neighbors::add);
             }
-            Collections.shuffle(neighbors);
+            Collections.shuffle(neighbors, getRandom());
 
             for (P p : neighbors) {
                 if (checked.contains(p)) {
@@ -91,6 +92,16 @@ abstract class PathFinder<P> {
      */
     protected abstract Iterable<P> getNeighbors(P point);
 
+    /**
+     * Gets the random number generator used to break ties between
+     * neighbors. Override this to make searches repeatable.
+     *
+     * @return The random number generator to use
+     */
+    protected Random getRandom() {
+        return ThreadLocalRandom.current();
+    }
+
     protected abstract PathNode createPathNode(P point, PathNode parent, Predicate<P> end);
 
     class PathNode implements Comparable<PathNode> {
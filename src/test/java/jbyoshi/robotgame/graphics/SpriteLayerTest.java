@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame.graphics;
+
+import jbyoshi.robotgame.action.BoundAction;
+import jbyoshi.robotgame.action.RobotMoveAction;
+import jbyoshi.robotgame.api.Direction;
+import jbyoshi.robotgame.api.Game;
+import jbyoshi.robotgame.api.Point;
+import jbyoshi.robotgame.impl.PlayerImpl;
+import jbyoshi.robotgame.model.GameModel;
+import jbyoshi.robotgame.model.RobotModel;
+import org.junit.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class SpriteLayerTest {
+    private static final float[] RENDER_TICKS = {0.25f, 0.5f, 1};
+
+    @Test
+    public void moveAcrossEdgeMatchesFullRedraw() {
+        checkMove(new Point(Game.WORLD_SIZE - 1, 15), Direction.RIGHT);
+        checkMove(new Point(0, 15), Direction.LEFT);
+        checkMove(new Point(15, Game.WORLD_SIZE - 1), Direction.DOWN);
+        checkMove(new Point(15, 0), Direction.UP);
+    }
+
+    @Test
+    public void moveInsideWorldMatchesFullRedraw() {
+        checkMove(new Point(20, 15), Direction.RIGHT);
+    }
+
+    /**
+     * Moves a robot one spot, then leaves it there for another tick, drawing
+     * the layer a bit at a time all the way through. Each picture has to be
+     * the same as drawing the whole layer from scratch.
+     */
+    private static void checkMove(Point start, Direction dir) {
+        GameModel game = new GameModel(42);
+        // Clear the walls around the robot, so the move can't be blocked.
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                Point spot = start.add(dx, dy);
+                game.map[spot.getX()][spot.getY()] = false;
+            }
+        }
+        RobotModel robot = new RobotModel(new PlayerImpl("Red", Color.RED), start);
+        game.add(robot);
+
+        GameDraw draw = new GameDraw(game.snapshot());
+        SpriteLayer incremental = new SpriteLayer(draw.component);
+        GameDraw.Frame frame = draw.getFrame();
+        incremental.update(frame.sprites, frame.spritesById, 1);
+
+        for (int tick = 0; tick < 2; tick++) {
+            game.preTick();
+            game.postTick(tick == 0 ? Collections.singletonList(new BoundAction(new RobotMoveAction(dir),
+                    robot.getId())) : Collections.emptyList());
+            frame = draw.update(game.snapshot());
+            for (float renderTicks : RENDER_TICKS) {
+                incremental.update(frame.sprites, frame.spritesById, renderTicks);
+                SpriteLayer full = new SpriteLayer(draw.component);
+                full.update(frame.sprites, frame.spritesById, renderTicks);
+                assertEquals("Pixels that differ after moving " + dir + " from " + start + ", tick " + tick
+                        + " at " + renderTicks, 0, countDifferences(incremental.getImage(), full.getImage()));
+            }
+        }
+        assertEquals(start.add(dir), robot.getLocation());
+    }
+
+    private static int countDifferences(BufferedImage a, BufferedImage b) {
+        int differences = 0;
+        for (int x = 0; x < a.getWidth(); x++) {
+            for (int y = 0; y < a.getHeight(); y++) {
+                if (a.getRGB(x, y) != b.getRGB(x, y)) {
+                    differences++;
+                }
+            }
+        }
+        return differences;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2016 JBYoshi.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package jbyoshi.robotgame.server;
+
+import jbyoshi.robotgame.action.*;
+import jbyoshi.robotgame.api.Direction;
+import jbyoshi.robotgame.impl.PlayerImpl;
+import jbyoshi.robotgame.model.GameModel;
+import jbyoshi.robotgame.model.SpawnerModel;
+import org.junit.Test;
+
+import java.awt.Color;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SocketServerTest {
+    private static final int TICKS = 10;
+
+    /**
+     * A client that sends actions for the other player's models, and actions
+     * that don't fit their target, must not be able to stop the game.
+     */
+    @Test(timeout = 30000)
+    public void forgedActionsAreIgnored() throws Exception {
+        PlayerImpl red = new PlayerImpl("Red", Color.RED), blue = new PlayerImpl("Blue", Color.BLUE);
+        SocketServer server = new SocketServer(0, Arrays.asList(red, blue), 0, 42);
+        Thread serverThread = new Thread(server, "Test server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        try (Socket forger = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             Socket honest = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            DataInputStream forgerIn = new DataInputStream(new BufferedInputStream(forger.getInputStream()));
+            DataInputStream honestIn = new DataInputStream(new BufferedInputStream(honest.getInputStream()));
+            assertEquals(WireFormat.GAME_STARTED, readFrame(forgerIn).readByte());
+            assertEquals(WireFormat.GAME_STARTED, readFrame(honestIn).readByte());
+
+            GameModel game = server.getGame();
+            int redSpawner = -1, blueSpawner = -1;
+            for (SpawnerModel spawner : game.getModels(SpawnerModel.class)) {
+                if (spawner.getPlayer() == red) {
+                    redSpawner = spawner.getId();
+                } else {
+                    blueSpawner = spawner.getId();
+                }
+            }
+
+            for (int i = 0; i < TICKS; i++) {
+                int tick = readTick(forgerIn);
+                assertEquals(tick, readTick(honestIn));
+                Set<BoundAction> forged = new LinkedHashSet<>();
+                // A move aimed at a spawner, and actions for the other player's spawner.
+                forged.add(new BoundAction(new RobotMoveAction(Direction.UP), redSpawner));
+                forged.add(new BoundAction(new SpawnerStartSpawnAction(), blueSpawner));
+                forged.add(new BoundAction(new RobotMoveAction(Direction.UP), blueSpawner));
+                // Sent again while the spawner is already spawning.
+                forged.add(new BoundAction(new SpawnerStartSpawnAction(), redSpawner));
+                sendActions(forger, tick, forged);
+                sendActions(honest, tick, Collections.emptySet());
+            }
+
+            assertTrue("The game stopped", game.isRunning());
+            assertTrue(game.ticks >= TICKS - 1);
+            assertNull(((SpawnerModel) game.getModelById(blueSpawner)).spawningRobot);
+        }
+    }
+
+    private static DataInputStream readFrame(DataInputStream in) throws IOException {
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        return new DataInputStream(new ByteArrayInputStream(body));
+    }
+
+    /**
+     * Skips the changes from the last tick, and reads the number of the next
+     * one.
+     */
+    private static int readTick(DataInputStream in) throws IOException {
+        while (true) {
+            DataInputStream frame = readFrame(in);
+            byte type = frame.readByte();
+            if (type == WireFormat.START_TICK) {
+                return frame.readInt();
+            }
+            assertNotEquals("The game ended", WireFormat.GAME_ENDED, type);
+        }
+    }
+
+    private static void sendActions(Socket socket, int tick, Collection<BoundAction> actions) throws IOException {
+        ByteBuffer frame = WireFormat.frame(WireFormat.ACTIONS, out -> WireFormat.writeActions(out, tick, actions));
+        socket.getOutputStream().write(frame.array(), frame.arrayOffset(), frame.remaining());
+    }
+}